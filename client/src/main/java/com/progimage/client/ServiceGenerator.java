@@ -4,12 +4,26 @@ import com.squareup.okhttp.OkHttpClient;
 import retrofit.RestAdapter;
 import retrofit.client.OkClient;
 
+import java.util.concurrent.Executor;
+
 public class ServiceGenerator {
-    private static final RestAdapter.Builder builder = new RestAdapter.Builder()
-            .setClient(new OkClient(new OkHttpClient()));
+    private static final OkClient client = new OkClient(new OkHttpClient());
+
+    public static <S> S createService(Class<S> serviceClass, String serviceUrl) {
+        RestAdapter adapter = builder(serviceUrl).build();
+        return adapter.create(serviceClass);
+    }
 
-    public static synchronized <S> S createService(Class<S> serviceClass, String serviceUrl) {
-        RestAdapter adapter = builder.setEndpoint(serviceUrl).build();
+    public static <S> S createService(Class<S> serviceClass, String serviceUrl, Executor httpExecutor) {
+        RestAdapter adapter = builder(serviceUrl).
+                setExecutors(httpExecutor, Runnable::run).
+                build();
         return adapter.create(serviceClass);
     }
+
+    private static RestAdapter.Builder builder(String serviceUrl) {
+        return new RestAdapter.Builder()
+                .setClient(client)
+                .setEndpoint(serviceUrl);
+    }
 }
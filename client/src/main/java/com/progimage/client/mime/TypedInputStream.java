@@ -0,0 +1,57 @@
+package com.progimage.client.mime;
+
+import retrofit.mime.TypedOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class TypedInputStream implements TypedOutput {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String mimeType;
+    private final InputStream stream;
+    private final long length;
+
+    public TypedInputStream(String mimeType, InputStream stream) {
+        this(mimeType, stream, -1);
+    }
+
+    public TypedInputStream(String mimeType, InputStream stream, long length) {
+        if (mimeType == null) {
+            throw new NullPointerException("mimeType");
+        }
+        if (stream == null) {
+            throw new NullPointerException("stream");
+        }
+        this.mimeType = mimeType;
+        this.stream = stream;
+        this.length = length;
+    }
+
+    @Override
+    public String fileName() {
+        return null;
+    }
+
+    @Override
+    public String mimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try (InputStream in = stream) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -5,16 +5,35 @@ import retrofit.http.Body;
 import retrofit.http.GET;
 import retrofit.http.POST;
 import retrofit.http.Query;
-import retrofit.mime.TypedByteArray;
+import retrofit.http.QueryMap;
+import retrofit.http.Streaming;
+import retrofit.mime.TypedOutput;
 import rx.Observable;
 
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
 
 public interface ConversionService {
 
+    @Streaming
     @POST("/progimage/conversion")
-    Observable<Response> convertImagePayload(@Body TypedByteArray payload, @Query("format") String format);
+    Observable<Response> convertImagePayload(@Body TypedOutput payload, @Query("format") String format);
+
+    @Streaming
+    @POST("/progimage/conversion")
+    Observable<Response> convertImagePayload(@Body TypedOutput payload, @Query("format") String format,
+                                             @QueryMap Map<String, String> options);
+
+    @Streaming
+    @POST("/progimage/conversion/batch")
+    Observable<Response> convertImagePayloadToTargets(@Body TypedOutput payload, @Query("target") List<String> targets,
+                                                      @QueryMap Map<String, String> options);
 
     @GET("/progimage/conversion")
     Observable<Response> convertImageFromUrl(@Query("url") URL url, @Query("format") String format);
+
+    @GET("/progimage/conversion")
+    Observable<Response> convertImageFromUrl(@Query("url") URL url, @Query("format") String format,
+                                             @QueryMap Map<String, String> options);
 }
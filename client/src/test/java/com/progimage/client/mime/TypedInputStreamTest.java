@@ -0,0 +1,45 @@
+package com.progimage.client.mime;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TypedInputStreamTest {
+
+    @Test
+    public void unknownLengthStreamIsWrittenCompletely() throws IOException {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        TypedInputStream typedInputStream = new TypedInputStream("image/png", new ByteArrayInputStream(data));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        typedInputStream.writeTo(out);
+
+        assertEquals(-1, typedInputStream.length());
+        assertEquals("image/png", typedInputStream.mimeType());
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    public void streamIsClosedAfterWrite() throws IOException {
+        boolean[] closed = new boolean[1];
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[] {1, 2, 3}) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+            }
+        };
+
+        new TypedInputStream("image/png", in, 3).writeTo(new ByteArrayOutputStream());
+
+        assertTrue(closed[0]);
+    }
+}
@@ -0,0 +1,19 @@
+package com.progimage.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+
+    private final Integer retryAfterSeconds;
+
+    public ServiceUnavailableException(String message) {
+        this(message, null);
+    }
+
+    public ServiceUnavailableException(String message, Integer retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Integer getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,7 +1,39 @@
 package com.progimage.conversion.config;
 
+import com.progimage.conversion.service.ConversionExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Configuration
 public class AppConfig {
+
+    @Value("${conversion.encoder.threads}")
+    private int encoderThreads;
+
+    @Value("${conversion.executor.threads}")
+    private int conversionThreads;
+
+    @Value("${conversion.executor.queue-capacity}")
+    private int conversionQueueCapacity;
+
+    @Value("${conversion.executor.pixel-budget}")
+    private long conversionPixelBudget;
+
+    @Value("${conversion.executor.retry-after-seconds}")
+    private int conversionRetryAfterSeconds;
+
+    @Bean(destroyMethod = "shutdown")
+    public ConversionExecutor conversionExecutor() {
+        return new ConversionExecutor(conversionThreads, conversionQueueCapacity, conversionPixelBudget,
+                conversionRetryAfterSeconds);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService encoderExecutor() {
+        return Executors.newFixedThreadPool(encoderThreads);
+    }
 }
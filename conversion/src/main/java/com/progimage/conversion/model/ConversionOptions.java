@@ -0,0 +1,104 @@
+package com.progimage.conversion.model;
+
+import java.awt.Rectangle;
+import java.util.Locale;
+
+public class ConversionOptions {
+
+    public enum Fit {CONTAIN, COVER, FILL}
+
+    public static final int MAX_COMPRESSION = 9;
+
+    private Integer width;
+    private Integer height;
+    private String fit;
+    private String crop;
+    private Float quality;
+    private Boolean progressive;
+    private Integer compression;
+
+    public boolean isResize() {
+        return width != null || height != null;
+    }
+
+    public boolean isCrop() {
+        return crop != null;
+    }
+
+    public boolean isEncoding() {
+        return quality != null || progressive != null || compression != null;
+    }
+
+    public Rectangle resolveCrop() {
+        String[] bounds = crop.split(",");
+        if (bounds.length != 4) {
+            throw new IllegalArgumentException("Crop should be specified as x,y,width,height");
+        }
+        Rectangle region = new Rectangle(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim()),
+                Integer.parseInt(bounds[2].trim()), Integer.parseInt(bounds[3].trim()));
+        if (region.x < 0 || region.y < 0 || region.width <= 0 || region.height <= 0) {
+            throw new IllegalArgumentException("Crop should have non-negative origin and positive size");
+        }
+        return region;
+    }
+
+    public Fit resolveFit() {
+        return fit == null ? Fit.CONTAIN : Fit.valueOf(fit.toUpperCase(Locale.ROOT));
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public String getFit() {
+        return fit;
+    }
+
+    public void setFit(String fit) {
+        this.fit = fit;
+    }
+
+    public String getCrop() {
+        return crop;
+    }
+
+    public void setCrop(String crop) {
+        this.crop = crop;
+    }
+
+    public Float getQuality() {
+        return quality;
+    }
+
+    public void setQuality(Float quality) {
+        this.quality = quality;
+    }
+
+    public Boolean getProgressive() {
+        return progressive;
+    }
+
+    public void setProgressive(Boolean progressive) {
+        this.progressive = progressive;
+    }
+
+    public Integer getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Integer compression) {
+        this.compression = compression;
+    }
+}
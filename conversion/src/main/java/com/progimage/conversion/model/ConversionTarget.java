@@ -0,0 +1,75 @@
+package com.progimage.conversion.model;
+
+public class ConversionTarget {
+
+    private final String format;
+    private final Integer width;
+    private final Integer height;
+
+    public ConversionTarget(String format, Integer width, Integer height) {
+        this.format = format;
+        this.width = width;
+        this.height = height;
+    }
+
+    public static ConversionTarget parse(String target) {
+        String[] parts = target.split(":", 2);
+        String format = parts[0].trim();
+        if (format.isEmpty()) {
+            throw new IllegalArgumentException("Target should start with a format");
+        }
+        if (parts.length == 1) {
+            return new ConversionTarget(format, null, null);
+        }
+
+        String[] size = parts[1].split("x", -1);
+        if (size.length != 2) {
+            throw new IllegalArgumentException("Target size should be specified as widthxheight");
+        }
+        Integer width = size[0].trim().isEmpty() ? null : Integer.valueOf(size[0].trim());
+        Integer height = size[1].trim().isEmpty() ? null : Integer.valueOf(size[1].trim());
+        if (width == null && height == null) {
+            throw new IllegalArgumentException("Target size should specify width, height or both");
+        }
+        if (width != null && width <= 0 || height != null && height <= 0) {
+            throw new IllegalArgumentException("Target width and height should be positive");
+        }
+        return new ConversionTarget(format, width, height);
+    }
+
+    public ConversionOptions toOptions(ConversionOptions options) {
+        ConversionOptions targetOptions = new ConversionOptions();
+        targetOptions.setFit(options.getFit());
+        targetOptions.setQuality(options.getQuality());
+        targetOptions.setProgressive(options.getProgressive());
+        targetOptions.setCompression(options.getCompression());
+        if (width != null || height != null) {
+            targetOptions.setWidth(width);
+            targetOptions.setHeight(height);
+        } else {
+            targetOptions.setWidth(options.getWidth());
+            targetOptions.setHeight(options.getHeight());
+        }
+        return targetOptions;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        if (width == null && height == null) {
+            return format;
+        }
+        return format + ":" + (width == null ? "" : width) + "x" + (height == null ? "" : height);
+    }
+}
@@ -2,20 +2,32 @@ package com.progimage.conversion.resource;
 
 import com.progimage.client.ServiceGenerator;
 import com.progimage.client.service.RepositoryAccessService;
+import com.progimage.conversion.model.ConversionOptions;
+import com.progimage.conversion.model.ConversionTarget;
+import com.progimage.conversion.service.ConversionExecutor;
 import com.progimage.conversion.service.FormatConversionService;
 import com.progimage.exception.BadRequestException;
 import com.progimage.exception.UnsupportedFormatException;
-import com.google.common.base.Throwables;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/progimage/conversion")
@@ -24,6 +36,9 @@ public class ConversionResource {
     @Autowired
     private FormatConversionService formatConversionService;
 
+    @Autowired
+    private ConversionExecutor conversionExecutor;
+
     @Value("${repository.service.url}")
     private String repositoryServiceUrl;
 
@@ -35,41 +50,104 @@ public class ConversionResource {
     }
 
     @RequestMapping(method = RequestMethod.POST)
-    public void convertFromPayload(@RequestParam String format, HttpServletRequest request,
+    public void convertFromPayload(@RequestParam String format, ConversionOptions options, HttpServletRequest request,
                                    HttpServletResponse response) throws UnsupportedFormatException, IOException {
         ensureFormatSupported(format);
+        ensureOptionsValid(options);
         response.setContentType("image/" + format);
-        formatConversionService.convert(request.getInputStream(), response.getOutputStream(), format);
+        convert(request.getInputStream(), response, format, options);
+    }
+
+    @RequestMapping(value = "/batch", method = RequestMethod.POST)
+    public ResponseEntity<MultiValueMap<String, Object>> convertFromPayloadToTargets(
+            @RequestParam("target") List<String> targetSpecs, ConversionOptions options, HttpServletRequest request)
+            throws UnsupportedFormatException, IOException {
+        List<ConversionTarget> targets = new ArrayList<>(targetSpecs.size());
+        for (String targetSpec : targetSpecs) {
+            ConversionTarget target = parseTarget(targetSpec);
+            ensureFormatSupported(target.getFormat());
+            targets.add(target);
+        }
+        ensureOptionsValid(options);
+
+        BufferedInputStream input = new BufferedInputStream(request.getInputStream());
+        List<byte[]> images = conversionExecutor.execute(formatConversionService.measurePixels(input, targets, options),
+                () -> formatConversionService.convert(input, targets, options));
+
+        MultiValueMap<String, Object> parts = new LinkedMultiValueMap<>();
+        for (int i = 0; i < targets.size(); i++) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("image/" + targets.get(i).getFormat()));
+            parts.add(targets.get(i).toString(), new HttpEntity<>(images.get(i), headers));
+        }
+        return ResponseEntity.ok().contentType(MediaType.MULTIPART_FORM_DATA).body(parts);
     }
 
     @RequestMapping(method = RequestMethod.GET)
     public void convertFromUrlOrRepository(@RequestParam(required = false) String url,
                                            @RequestParam(required = false) String id, @RequestParam String format,
-                                           HttpServletResponse response) throws UnsupportedFormatException, IOException {
+                                           ConversionOptions options, HttpServletResponse response)
+            throws UnsupportedFormatException, IOException {
         if (StringUtils.isEmpty(url) && StringUtils.isEmpty(id) ||
                 StringUtils.hasText(url) && StringUtils.hasText(id)) {
             throw new BadRequestException("Either 'id' or 'url' should be provided");
         }
 
         ensureFormatSupported(format);
+        ensureOptionsValid(options);
         response.setContentType("image/" + format);
 
-        if (StringUtils.hasText(url)) {
-            formatConversionService.convert(
-                    new URL(url).openConnection().getInputStream(),
-                    response.getOutputStream(), format);
-        } else {
-            repositoryAccessService.downloadOriginal(id).
-                    map(repositoryResponse -> {
-                        try {
-                            formatConversionService.convert(
-                                    repositoryResponse.getBody().in(),
-                                    response.getOutputStream(), format);
-                        } catch (IOException e) {
-                            throw Throwables.propagate(e);
-                        }
-                        return null;
-                    }).toBlocking().single();
+        InputStream input = StringUtils.hasText(url)
+                ? new URL(url).openConnection().getInputStream()
+                : repositoryAccessService.downloadOriginal(id).toBlocking().single().getBody().in();
+        convert(input, response, format, options);
+    }
+
+    private void convert(InputStream input, HttpServletResponse response, String format, ConversionOptions options)
+            throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        conversionExecutor.execute(formatConversionService.measurePixels(buffered, options), () -> {
+            formatConversionService.convert(buffered, response.getOutputStream(), format, options);
+            return null;
+        });
+    }
+
+    private void ensureOptionsValid(ConversionOptions options) {
+        if (options.getWidth() != null && options.getWidth() <= 0 || options.getHeight() != null && options.getHeight() <= 0) {
+            throw new BadRequestException("Requested 'width' and 'height' should be positive");
+        }
+        try {
+            options.resolveFit();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(String.format("Requested fit [%s] is not supported", options.getFit()));
+        }
+        if (options.getQuality() != null && (options.getQuality() < 0 || options.getQuality() > 1)) {
+            throw new BadRequestException("Requested 'quality' should be between 0 and 1");
+        }
+        if (options.getCompression() != null &&
+                (options.getCompression() < 0 || options.getCompression() > ConversionOptions.MAX_COMPRESSION)) {
+            throw new BadRequestException(String.format("Requested 'compression' should be between 0 and %d",
+                    ConversionOptions.MAX_COMPRESSION));
+        }
+        if (options.getQuality() != null && options.getCompression() != null) {
+            throw new BadRequestException("Only one of 'quality' and 'compression' should be provided");
+        }
+        if (options.isCrop()) {
+            try {
+                options.resolveCrop();
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(String.format("Requested crop [%s] is not valid: %s",
+                        options.getCrop(), e.getMessage()));
+            }
+        }
+    }
+
+    private ConversionTarget parseTarget(String targetSpec) {
+        try {
+            return ConversionTarget.parse(targetSpec);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(String.format("Requested target [%s] is not valid: %s",
+                    targetSpec, e.getMessage()));
         }
     }
 
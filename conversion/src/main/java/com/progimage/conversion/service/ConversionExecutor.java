@@ -0,0 +1,81 @@
+package com.progimage.conversion.service;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.progimage.exception.ServiceUnavailableException;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConversionExecutor implements PublicMetrics {
+
+    private static final int PIXELS_PER_PERMIT = 1024;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Semaphore budget;
+
+    private final int budgetPermits;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ConversionExecutor(int threads, int queueCapacity, long pixelBudget, int retryAfterSeconds) {
+        this.budgetPermits = (int) Math.max(1, pixelBudget / PIXELS_PER_PERMIT);
+        this.budget = new Semaphore(budgetPermits, true);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("conversion-"),
+                (task, pool) -> {
+                    rejected.incrementAndGet();
+                    throw new ServiceUnavailableException("Server is busy converting images, try again later",
+                            retryAfterSeconds);
+                });
+    }
+
+    public <T> T execute(long pixels, Callable<T> conversion) throws IOException {
+        int permits = (int) Math.min(budgetPermits, Math.max(1, pixels / PIXELS_PER_PERMIT));
+        Future<T> result = executor.submit(() -> {
+            budget.acquire(permits);
+            try {
+                return conversion.call();
+            } finally {
+                budget.release(permits);
+            }
+        });
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for image conversion");
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return ImmutableList.of(
+                new Metric<>("conversion.executor.active", executor.getActiveCount()),
+                new Metric<>("conversion.executor.queue", executor.getQueue().size()),
+                new Metric<>("conversion.executor.rejected", rejected.get()),
+                new Metric<>("conversion.executor.budget.waiting", budget.getQueueLength()),
+                new Metric<>("conversion.executor.budget.available", (long) budget.availablePermits() * PIXELS_PER_PERMIT));
+    }
+}
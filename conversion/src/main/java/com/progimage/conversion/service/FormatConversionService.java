@@ -1,25 +1,346 @@
 package com.progimage.conversion.service;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.progimage.conversion.model.ConversionOptions;
+import com.progimage.conversion.model.ConversionTarget;
+import com.progimage.exception.BadRequestException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class FormatConversionService {
     private final static HashSet SUPPORTED_FORMATS = Sets.newHashSet(ImageIO.getWriterFormatNames());
 
+    private static final int SUBSAMPLING_HEADROOM = 2;
+
+    private static final int DEFAULT_BANDS = 4;
+
+    private static final int RESIZE_STEPS_RATIO = 3;
+
+    @Value("${conversion.header.max-bytes}")
+    private int headerMaxBytes;
+
+    @Autowired
+    private ImageCodecPool imageCodecPool;
+
+    @Autowired
+    @Qualifier("encoderExecutor")
+    private ExecutorService encoderExecutor;
+
     public boolean isFormatSupported(String format) {
         return SUPPORTED_FORMATS.contains(format);
     }
 
+    public long measurePixels(BufferedInputStream input, ConversionOptions options) throws IOException {
+        return measure(input, options, Collections.singletonList(options));
+    }
+
+    public long measurePixels(BufferedInputStream input, List<ConversionTarget> targets, ConversionOptions options)
+            throws IOException {
+        return measure(input, options, targetOptions(targets, options));
+    }
+
+    private long measure(BufferedInputStream input, ConversionOptions options, List<ConversionOptions> targets)
+            throws IOException {
+        input.mark(headerMaxBytes);
+        try (ImageInputStream imageInput = new MemoryCacheImageInputStream(ByteStreams.limit(input, headerMaxBytes))) {
+            ImageReader reader = null;
+            try {
+                reader = imageCodecPool.borrowReader(imageInput);
+                reader.setInput(imageInput, true, true);
+                Rectangle region = region(reader, options);
+                int subsampling = subsampling(region, targets);
+                long decodedPixels = (long) ceilDiv(region.width, subsampling) * ceilDiv(region.height, subsampling);
+                long pixels = decodedPixels * bands(reader);
+                for (ConversionOptions target : targets) {
+                    if (target.isResize()) {
+                        int[] scaled = scaledSize(region.width, region.height, target);
+                        pixels += (decodedPixels / RESIZE_STEPS_RATIO + (long) scaled[0] * scaled[1]) * DEFAULT_BANDS;
+                    }
+                }
+                return pixels;
+            } catch (IOException e) {
+                return Long.MAX_VALUE;
+            } finally {
+                if (reader != null) {
+                    imageCodecPool.release(reader);
+                }
+            }
+        } finally {
+            input.reset();
+        }
+    }
+
+    private int bands(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            type = types.hasNext() ? types.next() : null;
+        }
+        return type == null ? DEFAULT_BANDS : type.getNumBands();
+    }
+
     public void convert(InputStream input, OutputStream outputStream, String format) throws IOException {
-        BufferedImage image = ImageIO.read(input);
-        ImageIO.write(image, format, outputStream);
+        convert(input, outputStream, format, new ConversionOptions());
+    }
+
+    public void convert(InputStream input, OutputStream outputStream, String format, ConversionOptions options)
+            throws IOException {
+        Decoded decoded = read(input, options, Collections.singletonList(options));
+        write(resize(decoded, options), format, options, outputStream);
+    }
+
+    public List<byte[]> convert(InputStream input, List<ConversionTarget> targets, ConversionOptions options)
+            throws IOException {
+        List<ConversionOptions> targetOptions = targetOptions(targets, options);
+        Decoded source = read(input, options, targetOptions);
+        List<Future<byte[]>> encodings = IntStream.range(0, targets.size())
+                .mapToObj(i -> encoderExecutor.submit(() -> encode(source, targets.get(i).getFormat(), targetOptions.get(i))))
+                .collect(Collectors.toList());
+        try {
+            List<byte[]> encoded = new ArrayList<>(encodings.size());
+            for (Future<byte[]> encoding : encodings) {
+                encoded.add(await(encoding));
+            }
+            return encoded;
+        } finally {
+            encodings.forEach(encoding -> encoding.cancel(true));
+        }
+    }
+
+    private List<ConversionOptions> targetOptions(List<ConversionTarget> targets, ConversionOptions options) {
+        return targets.stream().map(target -> target.toOptions(options)).collect(Collectors.toList());
+    }
+
+    private byte[] encode(Decoded source, String format, ConversionOptions options) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        write(resize(source, options), format, options, output);
+        return output.toByteArray();
+    }
+
+    private byte[] await(Future<byte[]> encoding) throws IOException {
+        try {
+            return encoding.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for image encoding");
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private void write(BufferedImage image, String format, ConversionOptions options, OutputStream outputStream)
+            throws IOException {
+        if (PngDeflater.FORMAT.equalsIgnoreCase(format) && options.getCompression() != null) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            writeImage(image, format, options, encoded);
+            PngDeflater.recompress(encoded.toByteArray(), options.getCompression(), outputStream);
+        } else {
+            writeImage(image, format, options, outputStream);
+        }
+    }
+
+    private void writeImage(BufferedImage image, String format, ConversionOptions options, OutputStream outputStream)
+            throws IOException {
+        ImageWriter writer = imageCodecPool.borrowWriter(image, format);
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), writeParam(writer, format, options));
+        } finally {
+            imageCodecPool.release(writer);
+        }
+    }
+
+    private ImageWriteParam writeParam(ImageWriter writer, String format, ConversionOptions options) {
+        if (!options.isEncoding()) {
+            return null;
+        }
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        Float quality = options.getQuality();
+        if (options.getCompression() != null && !PngDeflater.FORMAT.equalsIgnoreCase(format)) {
+            quality = Math.max(0f, 1f - (options.getCompression() + 0.5f) / ConversionOptions.MAX_COMPRESSION);
+        }
+        if (quality != null) {
+            if (!param.canWriteCompressed()) {
+                throw new BadRequestException(String.format("Requested format [%s] does not support compression settings", format));
+            }
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (param.getCompressionTypes() != null && param.getCompressionType() == null) {
+                param.setCompressionType(param.getCompressionTypes()[0]);
+            }
+            param.setCompressionQuality(quality);
+        }
+        if (options.getProgressive() != null) {
+            if (!param.canWriteProgressive()) {
+                throw new BadRequestException(String.format("Requested format [%s] does not support progressive encoding", format));
+            }
+            param.setProgressiveMode(options.getProgressive() ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        }
+        return param;
+    }
+
+    private Decoded read(InputStream input, ConversionOptions options, List<ConversionOptions> targets)
+            throws IOException {
+        try (ImageInputStream imageInput = new MemoryCacheImageInputStream(input)) {
+            ImageReader reader = imageCodecPool.borrowReader(imageInput);
+            try {
+                reader.setInput(imageInput, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                Rectangle region = region(reader, options);
+                if (options.isCrop()) {
+                    param.setSourceRegion(region);
+                }
+                int subsampling = subsampling(region, targets);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return new Decoded(reader.read(0, param), region);
+            } finally {
+                imageCodecPool.release(reader);
+            }
+        }
+    }
+
+    private Rectangle region(ImageReader reader, ConversionOptions options) throws IOException {
+        Rectangle region = new Rectangle(reader.getWidth(0), reader.getHeight(0));
+        if (options.isCrop()) {
+            region = region.intersection(options.resolveCrop());
+            if (region.isEmpty()) {
+                throw new BadRequestException("Requested crop is outside of the image bounds");
+            }
+        }
+        return region;
+    }
+
+    private int subsampling(Rectangle region, List<ConversionOptions> targets) {
+        int subsampling = Integer.MAX_VALUE;
+        for (ConversionOptions target : targets) {
+            if (!target.isResize()) {
+                return 1;
+            }
+            int[] scaled = scaledSize(region.width, region.height, target);
+            subsampling = Math.min(subsampling,
+                    Math.max(1, Math.min(region.width / scaled[0], region.height / scaled[1]) / SUBSAMPLING_HEADROOM));
+        }
+        return targets.isEmpty() ? 1 : subsampling;
+    }
+
+    private int ceilDiv(int size, int divisor) {
+        return (size + divisor - 1) / divisor;
+    }
+
+    private BufferedImage resize(Decoded decoded, ConversionOptions options) {
+        if (!options.isResize()) {
+            return decoded.image;
+        }
+        return resize(decoded.image, scaledSize(decoded.region.width, decoded.region.height, options), options);
+    }
+
+    private BufferedImage resize(BufferedImage decoded, int[] scaled, ConversionOptions options) {
+        BufferedImage image = scale(decoded, scaled[0], scaled[1]);
+        if (options.resolveFit() == ConversionOptions.Fit.COVER && options.getWidth() != null && options.getHeight() != null) {
+            image = image.getSubimage((image.getWidth() - options.getWidth()) / 2,
+                    (image.getHeight() - options.getHeight()) / 2, options.getWidth(), options.getHeight());
+        }
+        return image;
+    }
+
+    private int[] scaledSize(int sourceWidth, int sourceHeight, ConversionOptions options) {
+        Integer width = options.getWidth();
+        Integer height = options.getHeight();
+        if (width == null) {
+            return new int[] {scale(sourceWidth, (double) height / sourceHeight), height};
+        }
+        if (height == null) {
+            return new int[] {width, scale(sourceHeight, (double) width / sourceWidth)};
+        }
+        double widthRatio = (double) width / sourceWidth;
+        double heightRatio = (double) height / sourceHeight;
+        switch (options.resolveFit()) {
+            case FILL:
+                return new int[] {width, height};
+            case COVER:
+                double coverRatio = Math.max(widthRatio, heightRatio);
+                return new int[] {Math.max(width, scale(sourceWidth, coverRatio)), Math.max(height, scale(sourceHeight, coverRatio))};
+            default:
+                double containRatio = Math.min(widthRatio, heightRatio);
+                return new int[] {scale(sourceWidth, containRatio), scale(sourceHeight, containRatio)};
+        }
+    }
+
+    private int scale(int size, double ratio) {
+        return Math.max(1, (int) Math.round(size * ratio));
+    }
+
+    private BufferedImage scale(BufferedImage image, int width, int height) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = currentWidth / 2 >= width ? currentWidth / 2 : width;
+            currentHeight = currentHeight / 2 >= height ? currentHeight / 2 : height;
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static class Decoded {
+
+        private final BufferedImage image;
+
+        private final Rectangle region;
+
+        Decoded(BufferedImage image, Rectangle region) {
+            this.image = image;
+            this.region = region;
+        }
     }
 }
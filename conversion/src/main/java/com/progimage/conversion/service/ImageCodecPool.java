@@ -0,0 +1,90 @@
+package com.progimage.conversion.service;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+@Service
+public class ImageCodecPool {
+
+    private final ConcurrentMap<String, List<ImageWriterSpi>> writerSpis = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Object, Queue<ImageReader>> readers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Object, Queue<ImageWriter>> writers = new ConcurrentHashMap<>();
+
+    private List<ImageReaderSpi> readerSpis;
+
+    @PostConstruct
+    public void init() {
+        ImageIO.setUseCache(false);
+        readerSpis = ImmutableList.copyOf(
+                IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true));
+    }
+
+    public ImageReader borrowReader(ImageInputStream input) throws IOException {
+        for (ImageReaderSpi spi : readerSpis) {
+            input.mark();
+            boolean canDecode = spi.canDecodeInput(input);
+            input.reset();
+            if (canDecode) {
+                ImageReader reader = pool(readers, spi).poll();
+                return reader != null ? reader : spi.createReaderInstance();
+            }
+        }
+        throw new IIOException("Unable to find a reader for the image");
+    }
+
+    public void release(ImageReader reader) {
+        reader.reset();
+        pool(readers, reader.getOriginatingProvider()).offer(reader);
+    }
+
+    public ImageWriter borrowWriter(RenderedImage image, String format) throws IOException {
+        ImageTypeSpecifier type = ImageTypeSpecifier.createFromRenderedImage(image);
+        for (ImageWriterSpi spi : writerSpis.computeIfAbsent(format, this::findWriterSpis)) {
+            if (spi.canEncodeImage(type)) {
+                ImageWriter writer = pool(writers, spi).poll();
+                return writer != null ? writer : spi.createWriterInstance();
+            }
+        }
+        throw new IIOException(String.format("Unable to find a writer for format [%s]", format));
+    }
+
+    public void release(ImageWriter writer) {
+        writer.reset();
+        pool(writers, writer.getOriginatingProvider()).offer(writer);
+    }
+
+    private List<ImageWriterSpi> findWriterSpis(String format) {
+        ImmutableList.Builder<ImageWriterSpi> spis = ImmutableList.builder();
+        IIORegistry.getDefaultInstance().getServiceProviders(ImageWriterSpi.class, true).forEachRemaining(spi -> {
+            if (Arrays.stream(spi.getFormatNames()).anyMatch(format::equalsIgnoreCase)) {
+                spis.add(spi);
+            }
+        });
+        return spis.build();
+    }
+
+    private <T> Queue<T> pool(ConcurrentMap<Object, Queue<T>> pools, Object spi) {
+        return pools.computeIfAbsent(spi, key -> new ConcurrentLinkedQueue<>());
+    }
+}
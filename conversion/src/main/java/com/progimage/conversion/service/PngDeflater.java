@@ -0,0 +1,101 @@
+package com.progimage.conversion.service;
+
+import javax.imageio.IIOException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+class PngDeflater {
+
+    static final String FORMAT = "png";
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static final String IDAT = "IDAT";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private PngDeflater() {
+    }
+
+    static void recompress(byte[] png, int level, OutputStream output) throws IOException {
+        if (png.length < SIGNATURE.length || !Arrays.equals(SIGNATURE, Arrays.copyOf(png, SIGNATURE.length))) {
+            throw new IIOException("Encoded image is not a PNG stream");
+        }
+        DataInputStream chunks = new DataInputStream(
+                new ByteArrayInputStream(png, SIGNATURE.length, png.length - SIGNATURE.length));
+        DataOutputStream out = new DataOutputStream(output);
+        out.write(SIGNATURE);
+
+        Inflater inflater = new Inflater();
+        Deflater deflater = new Deflater(level);
+        try {
+            ByteArrayOutputStream imageData = new ByteArrayOutputStream();
+            boolean imageDataWritten = false;
+            while (chunks.available() > 0) {
+                int length = chunks.readInt();
+                byte[] type = new byte[4];
+                chunks.readFully(type);
+                byte[] data = new byte[length];
+                chunks.readFully(data);
+                chunks.readInt();
+
+                if (IDAT.equals(new String(type, StandardCharsets.US_ASCII))) {
+                    inflate(inflater, data, imageData);
+                    continue;
+                }
+                if (imageData.size() > 0 && !imageDataWritten) {
+                    writeChunk(out, IDAT.getBytes(StandardCharsets.US_ASCII), deflate(deflater, imageData.toByteArray()));
+                    imageDataWritten = true;
+                }
+                writeChunk(out, type, data);
+            }
+            out.flush();
+        } catch (DataFormatException e) {
+            throw new IIOException("Unable to recompress PNG image data", e);
+        } finally {
+            inflater.end();
+            deflater.end();
+        }
+    }
+
+    private static void inflate(Inflater inflater, byte[] data, ByteArrayOutputStream imageData)
+            throws DataFormatException {
+        inflater.setInput(data);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int inflated;
+        while ((inflated = inflater.inflate(buffer)) > 0) {
+            imageData.write(buffer, 0, inflated);
+        }
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] imageData) {
+        deflater.setInput(imageData);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void writeChunk(DataOutputStream out, byte[] type, byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(type);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -14,7 +14,15 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.Assert.*;
@@ -131,4 +139,220 @@ public class ConversionResourceTest {
         assertNotNull(response.getBody());
         assertTrue(response.getBody().contains("Either 'id' or 'url' should be provided"));
     }
+
+    @Test
+    public void convertFromPayloadWithResize() throws IOException {
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&width={width}&height={height}&fit={fit}", existingJpgData,
+                byte[].class, "png", 40, 40, "cover");
+
+        assertTrue(response.getStatusCode() == HttpStatus.OK);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getBody()));
+        assertEquals(40, image.getWidth());
+        assertEquals(40, image.getHeight());
+    }
+
+    @Test
+    public void convertFromPayloadWithWidthKeepsAspectRatio() throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(existingJpgData));
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&width={width}", existingJpgData,
+                byte[].class, "png", 20);
+
+        assertTrue(response.getStatusCode() == HttpStatus.OK);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getBody()));
+        assertEquals(20, image.getWidth());
+        assertEquals(Math.max(1, Math.round(source.getHeight() * 20.0 / source.getWidth())), image.getHeight());
+    }
+
+    @Test
+    public void convertFromPayloadUnsupportedFit() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&width={width}&fit={fit}", existingJpgData,
+                String.class, "png", 20, "stretch");
+
+        assertTrue(response.getStatusCode() == HttpStatus.BAD_REQUEST);
+        assertTrue(response.getBody().contains("Requested fit [stretch] is not supported"));
+    }
+
+    @Test
+    public void convertFromPayloadWithCrop() throws IOException {
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&crop={crop}", existingJpgData,
+                byte[].class, "png", "5,5,10,20");
+
+        assertTrue(response.getStatusCode() == HttpStatus.OK);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(response.getBody()));
+        assertEquals(10, image.getWidth());
+        assertEquals(20, image.getHeight());
+    }
+
+    @Test
+    public void convertFromPayloadInvalidCrop() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&crop={crop}", existingJpgData,
+                String.class, "png", "5,5,10");
+
+        assertTrue(response.getStatusCode() == HttpStatus.BAD_REQUEST);
+        assertTrue(response.getBody().contains("Requested crop [5,5,10] is not valid"));
+    }
+
+    @Test
+    public void convertFromPayloadToTargets() throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(existingJpgData));
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(
+                "/progimage/conversion/batch?target={first}&target={second}", existingJpgData,
+                byte[].class, "png", "jpg:10x10");
+
+        assertTrue(response.getStatusCode() == HttpStatus.OK);
+        assertTrue(MediaType.MULTIPART_FORM_DATA.includes(response.getHeaders().getContentType()));
+        Map<String, byte[]> parts = parts(response);
+        assertEquals(2, parts.size());
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(parts.get("png")));
+        assertEquals(source.getWidth(), original.getWidth());
+        assertEquals(source.getHeight(), original.getHeight());
+        BufferedImage resized = ImageIO.read(new ByteArrayInputStream(parts.get("jpg:10x10")));
+        assertEquals(10, Math.max(resized.getWidth(), resized.getHeight()));
+    }
+
+    @Test
+    public void convertFromPayloadToResizedTargets() throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(existingJpgData));
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(
+                "/progimage/conversion/batch?target={first}&target={second}", existingJpgData,
+                byte[].class, "png:20x", "jpg:10x");
+
+        assertTrue(response.getStatusCode() == HttpStatus.OK);
+        Map<String, byte[]> parts = parts(response);
+        BufferedImage larger = ImageIO.read(new ByteArrayInputStream(parts.get("png:20x")));
+        assertEquals(20, larger.getWidth());
+        assertEquals(Math.max(1, Math.round(source.getHeight() * 20.0 / source.getWidth())), larger.getHeight());
+        BufferedImage smaller = ImageIO.read(new ByteArrayInputStream(parts.get("jpg:10x")));
+        assertEquals(10, smaller.getWidth());
+        assertEquals(Math.max(1, Math.round(source.getHeight() * 10.0 / source.getWidth())), smaller.getHeight());
+    }
+
+    @Test
+    public void convertFromPayloadToInvalidTarget() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/progimage/conversion/batch?target={target}", existingJpgData,
+                String.class, "png:0x10");
+
+        assertTrue(response.getStatusCode() == HttpStatus.BAD_REQUEST);
+        assertTrue(response.getBody().contains("Requested target [png:0x10] is not valid"));
+    }
+
+    @Test
+    public void convertFromPayloadWithQuality() throws IOException {
+        ResponseEntity<byte[]> low = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&quality={quality}", existingPngData,
+                byte[].class, "jpg", "0.1");
+        ResponseEntity<byte[]> high = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&quality={quality}", existingPngData,
+                byte[].class, "jpg", "0.95");
+
+        assertTrue(low.getStatusCode() == HttpStatus.OK);
+        assertTrue(high.getStatusCode() == HttpStatus.OK);
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(low.getBody())));
+        assertTrue(low.getBody().length < high.getBody().length);
+    }
+
+    @Test
+    public void convertFromPayloadProgressive() throws IOException {
+        ResponseEntity<byte[]> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&progressive={progressive}", existingPngData,
+                byte[].class, "jpg", "true");
+
+        assertTrue(response.getStatusCode() == HttpStatus.OK);
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(response.getBody())));
+    }
+
+    @Test
+    public void convertFromPayloadInvalidQuality() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&quality={quality}", existingJpgData,
+                String.class, "jpg", "1.5");
+
+        assertTrue(response.getStatusCode() == HttpStatus.BAD_REQUEST);
+        assertTrue(response.getBody().contains("Requested 'quality' should be between 0 and 1"));
+    }
+
+    @Test
+    public void convertFromPayloadWithCompression() throws IOException {
+        ResponseEntity<byte[]> light = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&compression={compression}", existingPngData,
+                byte[].class, "jpg", 0);
+        ResponseEntity<byte[]> strong = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&compression={compression}", existingPngData,
+                byte[].class, "jpg", 9);
+
+        assertTrue(light.getStatusCode() == HttpStatus.OK);
+        assertTrue(strong.getStatusCode() == HttpStatus.OK);
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(strong.getBody())));
+        assertTrue(strong.getBody().length < light.getBody().length);
+    }
+
+    @Test
+    public void convertFromPayloadToPngWithCompression() throws IOException {
+        ResponseEntity<byte[]> stored = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&compression={compression}", existingJpgData,
+                byte[].class, "png", 0);
+        ResponseEntity<byte[]> strong = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&compression={compression}", existingJpgData,
+                byte[].class, "png", 9);
+
+        assertTrue(stored.getStatusCode() == HttpStatus.OK);
+        assertTrue(strong.getStatusCode() == HttpStatus.OK);
+        BufferedImage storedImage = ImageIO.read(new ByteArrayInputStream(stored.getBody()));
+        BufferedImage strongImage = ImageIO.read(new ByteArrayInputStream(strong.getBody()));
+        assertEquals(storedImage.getWidth(), strongImage.getWidth());
+        assertEquals(storedImage.getRGB(0, 0), strongImage.getRGB(0, 0));
+        assertTrue(strong.getBody().length < stored.getBody().length);
+    }
+
+    @Test
+    public void convertFromPayloadInvalidCompression() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&compression={compression}", existingJpgData,
+                String.class, "jpg", 10);
+
+        assertTrue(response.getStatusCode() == HttpStatus.BAD_REQUEST);
+        assertTrue(response.getBody().contains("Requested 'compression' should be between 0 and 9"));
+    }
+
+    @Test
+    public void convertFromPayloadWithQualityAndCompression() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&quality={quality}&compression={compression}", existingJpgData,
+                String.class, "jpg", "0.5", 5);
+
+        assertTrue(response.getStatusCode() == HttpStatus.BAD_REQUEST);
+        assertTrue(response.getBody().contains("Only one of 'quality' and 'compression' should be provided"));
+    }
+
+    @Test
+    public void convertFromPayloadProgressiveUnsupportedByFormat() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "/progimage/conversion?format={format}&progressive={progressive}", existingJpgData,
+                String.class, "bmp", "true");
+
+        assertTrue(response.getStatusCode() == HttpStatus.BAD_REQUEST);
+        assertTrue(response.getBody().contains("Requested format [bmp] does not support progressive encoding"));
+    }
+
+    private Map<String, byte[]> parts(ResponseEntity<byte[]> response) {
+        String boundary = "--" + response.getHeaders().getContentType().getParameter("boundary");
+        String body = new String(response.getBody(), StandardCharsets.ISO_8859_1);
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        for (String part : body.split(Pattern.quote(boundary))) {
+            int headersEnd = part.indexOf("\r\n\r\n");
+            Matcher name = Pattern.compile("name=\"([^\"]+)\"").matcher(part);
+            if (headersEnd < 0 || !name.find() || name.start() > headersEnd) {
+                continue;
+            }
+            String content = part.substring(headersEnd + 4, part.length() - 2);
+            parts.put(name.group(1), content.getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return parts;
+    }
 }
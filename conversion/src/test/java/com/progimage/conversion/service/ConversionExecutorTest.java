@@ -0,0 +1,103 @@
+package com.progimage.conversion.service;
+
+import com.progimage.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConversionExecutorTest {
+
+    private ConversionExecutor conversionExecutor;
+
+    private ExecutorService callers;
+
+    @Before
+    public void init() {
+        conversionExecutor = new ConversionExecutor(2, 1, 10 * 1024, 7);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void cleanup() {
+        callers.shutdownNow();
+        conversionExecutor.shutdown();
+    }
+
+    @Test
+    public void executeReturnsConversionResult() throws Exception {
+        assertEquals("converted", conversionExecutor.execute(1024, () -> "converted"));
+    }
+
+    @Test
+    public void executeWaitsForPixelBudget() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        Future<?> large = callers.submit(() -> conversionExecutor.execute(10 * 1024, () -> {
+            running.incrementAndGet();
+            started.countDown();
+            release.await();
+            return running.decrementAndGet();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Future<Integer> small = callers.submit(() -> conversionExecutor.execute(1024, running::get));
+        awaitMetric("conversion.executor.budget.waiting", 1);
+        assertFalse(small.isDone());
+
+        release.countDown();
+        large.get(5, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(0), small.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void executeShedsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            callers.submit(() -> conversionExecutor.execute(1024, () -> {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            }));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> conversionExecutor.execute(1024, () -> true));
+        awaitMetric("conversion.executor.queue", 1);
+
+        try {
+            conversionExecutor.execute(1024, () -> true);
+            fail("Expected conversion to be shed");
+        } catch (ServiceUnavailableException e) {
+            assertEquals(Integer.valueOf(7), e.getRetryAfterSeconds());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private void awaitMetric(String name, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metric(name) != expected) {
+            assertTrue(String.format("Metric [%s] did not reach [%d]", name, expected), System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private long metric(String name) {
+        return conversionExecutor.metrics().stream().
+                filter(metric -> metric.getName().equals(name)).
+                map(Metric::getValue).
+                findFirst().
+                orElseThrow(() -> new IllegalArgumentException(name)).
+                longValue();
+    }
+}
@@ -0,0 +1,120 @@
+package com.progimage.conversion.service;
+
+import com.google.common.collect.ImmutableList;
+import com.progimage.conversion.model.ConversionOptions;
+import com.progimage.conversion.model.ConversionTarget;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FormatConversionServiceTest {
+
+    private final static long budget = 10000000;
+
+    private static byte[] existingJpgData;
+
+    static {
+        try {
+            existingJpgData = IOUtils.toByteArray(
+                    FormatConversionServiceTest.class.getResourceAsStream("/image.jpg"));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private FormatConversionService formatConversionService;
+
+    @Before
+    public void init() {
+        ImageCodecPool imageCodecPool = new ImageCodecPool();
+        imageCodecPool.init();
+
+        formatConversionService = new FormatConversionService();
+        ReflectionTestUtils.setField(formatConversionService, "imageCodecPool", imageCodecPool);
+        ReflectionTestUtils.setField(formatConversionService, "headerMaxBytes", 65536);
+    }
+
+    @Test
+    public void unreadableImageIsChargedFullBudget() throws IOException {
+        assertEquals(Long.MAX_VALUE, formatConversionService.measurePixels(
+                new BufferedInputStream(new ByteArrayInputStream(new byte[] {1, 2, 3})), new ConversionOptions()));
+    }
+
+    @Test
+    public void resizedTargetsAreCharged() throws IOException {
+        long source = formatConversionService.measurePixels(input(), new ConversionOptions());
+        long resized = formatConversionService.measurePixels(input(),
+                ImmutableList.of(ConversionTarget.parse("png"), ConversionTarget.parse("jpg:10x")),
+                new ConversionOptions());
+
+        assertTrue(source > 0);
+        assertTrue(resized > source);
+    }
+
+    @Test
+    public void subsampledConversionsOfLargeImageAreAdmittedTogether() throws Exception {
+        byte[] largePngData = largePngData();
+        long full = formatConversionService.measurePixels(
+                new BufferedInputStream(new ByteArrayInputStream(largePngData)), new ConversionOptions());
+        ConversionOptions thumbnail = new ConversionOptions();
+        thumbnail.setWidth(200);
+        long subsampled = formatConversionService.measurePixels(
+                new BufferedInputStream(new ByteArrayInputStream(largePngData)), thumbnail);
+        assertTrue(full > budget);
+        assertTrue(2 * subsampled < budget);
+
+        ConversionExecutor conversionExecutor = new ConversionExecutor(2, 1, budget, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        CountDownLatch started = new CountDownLatch(2);
+        try {
+            List<Future<Boolean>> conversions = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                conversions.add(callers.submit(() -> conversionExecutor.execute(subsampled, () -> {
+                    started.countDown();
+                    return started.await(5, TimeUnit.SECONDS);
+                })));
+            }
+            for (Future<Boolean> conversion : conversions) {
+                assertTrue(conversion.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+            conversionExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void measuringLeavesInputReadable() throws IOException {
+        BufferedInputStream input = input();
+        formatConversionService.measurePixels(input, new ConversionOptions());
+
+        assertEquals(existingJpgData.length, IOUtils.toByteArray(input).length);
+    }
+
+    private byte[] largePngData() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4000, 3000, BufferedImage.TYPE_3BYTE_BGR), "png", output);
+        return output.toByteArray();
+    }
+
+    private BufferedInputStream input() {
+        return new BufferedInputStream(new ByteArrayInputStream(existingJpgData));
+    }
+}
@@ -0,0 +1,84 @@
+package com.progimage.conversion.service;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ImageCodecPoolTest {
+
+    private static byte[] existingJpgData;
+
+    static {
+        try {
+            existingJpgData = IOUtils.toByteArray(
+                    ImageCodecPoolTest.class.getResourceAsStream("/image.jpg"));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private ImageCodecPool imageCodecPool;
+
+    @Before
+    public void init() {
+        imageCodecPool = new ImageCodecPool();
+        imageCodecPool.init();
+    }
+
+    @Test
+    public void releasedReaderIsReused() throws IOException {
+        ImageReader reader = imageCodecPool.borrowReader(input(existingJpgData));
+        imageCodecPool.release(reader);
+
+        assertSame(reader, imageCodecPool.borrowReader(input(existingJpgData)));
+    }
+
+    @Test
+    public void borrowedReaderIsNotShared() throws IOException {
+        ImageReader reader = imageCodecPool.borrowReader(input(existingJpgData));
+
+        assertNotSame(reader, imageCodecPool.borrowReader(input(existingJpgData)));
+    }
+
+    @Test
+    public void releasedReaderIsReset() throws IOException {
+        ImageInputStream input = input(existingJpgData);
+        ImageReader reader = imageCodecPool.borrowReader(input);
+        reader.setInput(input);
+        imageCodecPool.release(reader);
+
+        assertNull(imageCodecPool.borrowReader(input(existingJpgData)).getInput());
+    }
+
+    @Test
+    public void releasedWriterIsReusedPerFormat() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(existingJpgData));
+        ImageWriter writer = imageCodecPool.borrowWriter(image, "png");
+        imageCodecPool.release(writer);
+
+        assertSame(writer, imageCodecPool.borrowWriter(image, "png"));
+        assertNotSame(writer, imageCodecPool.borrowWriter(image, "jpg"));
+    }
+
+    @Test(expected = IIOException.class)
+    public void unreadableInputHasNoReader() throws IOException {
+        imageCodecPool.borrowReader(input(new byte[] {1, 2, 3}));
+    }
+
+    private ImageInputStream input(byte[] data) {
+        return new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+    }
+}
@@ -11,12 +11,13 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.transfer.TransferManager;
+import com.progimage.repository.service.WorkQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.ExecutorService;
-
 @Configuration
 public class AWSConfig {
 
@@ -29,6 +30,10 @@ public class AWSConfig {
     @Value("${aws.region}")
     private String region;
 
+    @Autowired
+    @Qualifier("catalogWorkQueue")
+    private WorkQueue catalogWorkQueue;
+
     @Bean
     public AWSCredentials awsCredentials() {
         return new BasicAWSCredentials(accessKey, secretKey);
@@ -54,17 +59,10 @@ public class AWSConfig {
         return new TransferManager(amazonS3());
     }
 
-    @Bean(destroyMethod = "shutdown")
-    ExecutorService dynamoDBAsyncExecutorService() {
-        return java.util.concurrent.Executors
-                .newFixedThreadPool(clientConfiguration()
-                        .getMaxConnections());
-    }
-
     @Bean
     public AmazonDynamoDBAsync amazonDynamoDBAsync() {
         return new AmazonDynamoDBAsyncClient(awsCredentials(),
-                clientConfiguration(), dynamoDBAsyncExecutorService()).
+                clientConfiguration(), catalogWorkQueue.executor()).
                 withRegion(RegionUtils.getRegion(region));
     }
 
@@ -0,0 +1,65 @@
+package com.progimage.repository.config;
+
+import com.progimage.repository.service.WorkQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${executor.storage.threads}")
+    private int storageThreads;
+
+    @Value("${executor.storage.queue-capacity}")
+    private int storageQueueCapacity;
+
+    @Value("${executor.catalog.threads}")
+    private int catalogThreads;
+
+    @Value("${executor.catalog.queue-capacity}")
+    private int catalogQueueCapacity;
+
+    @Value("${executor.conversion.threads}")
+    private int conversionThreads;
+
+    @Value("${executor.conversion.queue-capacity}")
+    private int conversionQueueCapacity;
+
+    @Value("${executor.warm.threads}")
+    private int warmThreads;
+
+    @Value("${executor.warm.queue-capacity}")
+    private int warmQueueCapacity;
+
+    @Value("${executor.job.threads}")
+    private int jobThreads;
+
+    @Value("${executor.job.queue-capacity}")
+    private int jobQueueCapacity;
+
+    @Bean(destroyMethod = "shutdown")
+    public WorkQueue storageWorkQueue() {
+        return new WorkQueue("storage", storageThreads, storageQueueCapacity);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public WorkQueue catalogWorkQueue() {
+        return new WorkQueue("catalog", catalogThreads, catalogQueueCapacity);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public WorkQueue conversionWorkQueue() {
+        return new WorkQueue("conversion", conversionThreads, conversionQueueCapacity);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public WorkQueue warmWorkQueue() {
+        return new WorkQueue("warm", warmThreads, warmQueueCapacity);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public WorkQueue jobWorkQueue() {
+        return new WorkQueue("job", jobThreads, jobQueueCapacity);
+    }
+}
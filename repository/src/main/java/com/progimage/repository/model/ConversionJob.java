@@ -0,0 +1,216 @@
+package com.progimage.repository.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+
+import java.util.Date;
+import java.util.List;
+
+@DynamoDBTable(tableName = "REPLACED_BY_VALUE_IN_PROPERTIES_FILE")
+public class ConversionJob {
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private String id;
+    private String format;
+    private List<String> ids;
+    private boolean all;
+    private long total;
+    private int chunkSize;
+    private volatile String status;
+    private volatile String cursor;
+    private volatile long processed;
+    private volatile long converted;
+    private volatile long skipped;
+    private volatile long failed;
+    private volatile String owner;
+    private volatile Date leaseExpiresAt;
+    private volatile Long version;
+    private Date createdAt;
+    private volatile Date startedAt;
+    private volatile long processedBeforeStart;
+    private volatile Date updatedAt;
+
+    @DynamoDBIgnore
+    public double getThroughput() {
+        if (startedAt == null || updatedAt == null || !updatedAt.after(startedAt)) {
+            return 0;
+        }
+        return (processed - processedBeforeStart) * 1000.0 / (updatedAt.getTime() - startedAt.getTime());
+    }
+
+    @DynamoDBHashKey(attributeName = "id")
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @DynamoDBAttribute(attributeName = "format")
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    @DynamoDBIgnore
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+
+    @DynamoDBAttribute(attributeName = "all")
+    public boolean isAll() {
+        return all;
+    }
+
+    public void setAll(boolean all) {
+        this.all = all;
+    }
+
+    @DynamoDBAttribute(attributeName = "total")
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    @DynamoDBAttribute(attributeName = "chunkSize")
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @DynamoDBAttribute(attributeName = "status")
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @DynamoDBAttribute(attributeName = "cursor")
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    @DynamoDBAttribute(attributeName = "processed")
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    @DynamoDBAttribute(attributeName = "converted")
+    public long getConverted() {
+        return converted;
+    }
+
+    public void setConverted(long converted) {
+        this.converted = converted;
+    }
+
+    @DynamoDBAttribute(attributeName = "skipped")
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    @DynamoDBAttribute(attributeName = "failed")
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    @DynamoDBAttribute(attributeName = "owner")
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    @DynamoDBAttribute(attributeName = "leaseExpiresAt")
+    public Date getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(Date leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    @DynamoDBVersionAttribute(attributeName = "version")
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    @DynamoDBAttribute(attributeName = "createdAt")
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @DynamoDBAttribute(attributeName = "startedAt")
+    public Date getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Date startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    @DynamoDBAttribute(attributeName = "processedBeforeStart")
+    public long getProcessedBeforeStart() {
+        return processedBeforeStart;
+    }
+
+    public void setProcessedBeforeStart(long processedBeforeStart) {
+        this.processedBeforeStart = processedBeforeStart;
+    }
+
+    @DynamoDBAttribute(attributeName = "updatedAt")
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
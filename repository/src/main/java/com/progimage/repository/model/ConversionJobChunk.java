@@ -0,0 +1,44 @@
+package com.progimage.repository.model;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+
+import java.util.List;
+
+@DynamoDBTable(tableName = "REPLACED_BY_VALUE_IN_PROPERTIES_FILE")
+public class ConversionJobChunk {
+
+    private String id;
+    private List<String> ids;
+
+    public ConversionJobChunk() {
+    }
+
+    public ConversionJobChunk(String jobId, int index, List<String> ids) {
+        this.id = id(jobId, index);
+        this.ids = ids;
+    }
+
+    public static String id(String jobId, int index) {
+        return jobId + "#ids#" + index;
+    }
+
+    @DynamoDBHashKey(attributeName = "id")
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    @DynamoDBAttribute(attributeName = "ids")
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+}
@@ -0,0 +1,37 @@
+package com.progimage.repository.model;
+
+public class ImageDescriptor {
+    private final String format;
+    private final int width;
+    private final int height;
+    private final long size;
+    private final String contentHash;
+
+    public ImageDescriptor(String format, int width, int height, long size, String contentHash) {
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.size = size;
+        this.contentHash = contentHash;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+}
@@ -17,9 +17,39 @@ public class ImageMetadata {
     private String name;
     private String originalFormat;
     private Map<String, String> formatsMapping = Maps.newHashMap();
+    private String detectedFormat;
+    private Integer width;
+    private Integer height;
+    private Long size;
+    private String contentHash;
     private Date createdAt;
     private Date updatedAt;
 
+    public ImageMetadata() {
+    }
+
+    public ImageMetadata(ImageMetadata other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.originalFormat = other.originalFormat;
+        this.formatsMapping = Maps.newHashMap(other.formatsMapping);
+        this.detectedFormat = other.detectedFormat;
+        this.width = other.width;
+        this.height = other.height;
+        this.size = other.size;
+        this.contentHash = other.contentHash;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
+    public void describe(ImageDescriptor descriptor) {
+        this.detectedFormat = descriptor.getFormat();
+        this.width = descriptor.getWidth();
+        this.height = descriptor.getHeight();
+        this.size = descriptor.getSize();
+        this.contentHash = descriptor.getContentHash();
+    }
+
     public String resolveStorageKey(String format) {
         format = StringUtils.isEmpty(format) ? originalFormat : format;
         if(!formatsMapping.containsKey(format)) {
@@ -71,6 +101,51 @@ public class ImageMetadata {
         this.formatsMapping = formatsMapping;
     }
 
+    @DynamoDBAttribute(attributeName = "detectedFormat")
+    public String getDetectedFormat() {
+        return detectedFormat;
+    }
+
+    public void setDetectedFormat(String detectedFormat) {
+        this.detectedFormat = detectedFormat;
+    }
+
+    @DynamoDBAttribute(attributeName = "width")
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    @DynamoDBAttribute(attributeName = "height")
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    @DynamoDBAttribute(attributeName = "size")
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    @DynamoDBAttribute(attributeName = "contentHash")
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     @DynamoDBAttribute(attributeName = "createdAt")
     public Date getCreatedAt() {
         return createdAt;
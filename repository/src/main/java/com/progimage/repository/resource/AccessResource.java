@@ -1,126 +1,128 @@
 package com.progimage.repository.resource;
 
-import com.amazonaws.util.IOUtils;
-import com.progimage.client.service.ConversionService;
-import com.progimage.client.ServiceGenerator;
 import com.progimage.exception.NotFoundException;
+import com.progimage.exception.ServiceUnavailableException;
 import com.progimage.exception.UnsupportedFormatException;
 import com.progimage.repository.model.ImageMetadata;
 import com.progimage.repository.service.CatalogService;
+import com.progimage.repository.service.ImageConversionService;
+import com.progimage.repository.service.ImageIdFilter;
+import com.progimage.repository.service.StorageLayout;
 import com.progimage.repository.service.StorageService;
 import com.progimage.repository.validators.ValidImage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.async.DeferredResult;
-import retrofit.mime.TypedByteArray;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import rx.Observable;
+import rx.Subscription;
 
-import javax.annotation.PostConstruct;
-import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
-
 @RestController
 @RequestMapping("/progimage/repository/")
 public class AccessResource {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final MediaType NDJSON = MediaType.valueOf(NDJSON_VALUE);
+
     @Autowired
     private CatalogService catalogService;
 
     @Autowired
     private StorageService storageService;
 
-    @Value("${conversion.service.url}")
-    private String conversionServiceUrl;
+    @Autowired
+    private ImageIdFilter imageIdFilter;
 
-    private ConversionService conversionService;
+    @Autowired
+    private StorageLayout storageLayout;
 
-    @PostConstruct
-    public void init() {
-        conversionService = ServiceGenerator.createService(ConversionService.class, conversionServiceUrl);
-    }
+    @Autowired
+    private ImageConversionService imageConversionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${retrieval.bulk.concurrency}")
+    private int bulkConcurrency;
+
+    @Value("${retrieval.conversion.timeout-millis}")
+    private long conversionTimeoutMillis;
+
+    @Value("${retrieval.bulk.timeout-millis}")
+    private long bulkTimeoutMillis;
 
     @RequestMapping(value = "{id:[^\\.]+}")
-    public void getImage(@PathVariable String id,
-                         HttpServletResponse response) throws UnsupportedFormatException {
-        ImageMetadata imageMetadata = catalogService.read(id);
-        if (imageMetadata == null) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
+    public DeferredResult<ResponseEntity<Void>> getImage(@PathVariable String id) {
+        DeferredResult<ResponseEntity<Void>> result = new DeferredResult<>();
+        locate(id, null).
+                switchIfEmpty(catalogService.read(id).flatMap(imageMetadata -> imageConversionService.resolveStorageKey(imageMetadata, null))).
+                map(storageKey -> redirect(storageService.resolveURL(storageKey))).
+                defaultIfEmpty(ResponseEntity.notFound().build()).
+                subscribe(result::setResult, result::setErrorResult);
 
-        try {
-            response.sendRedirect(storageService.resolveURL(imageMetadata.resolveStorageKey(null)).toString());
-        } catch (IOException e) {
-            throw Throwables.propagate(e);
-        }
+        return result;
     }
 
     @RequestMapping(value = "{id}.{extension}")
-    public void getImageInRequestedFormat(@PathVariable String id, @PathVariable String extension,
-                                          HttpServletResponse response) throws UnsupportedFormatException {
-
+    public DeferredResult<ResponseEntity<Void>> getImageInRequestedFormat(@PathVariable String id, @PathVariable String extension)
+            throws UnsupportedFormatException {
         ensureFormatSupported(extension);
-        ImageMetadata imageMetadata = catalogService.read(id);
-        if (imageMetadata == null) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
 
-        if (!imageMetadata.supports(extension)) {
-            convertImageToFormatAndStore(imageMetadata, extension).toBlocking().single();
-        }
+        DeferredResult<ResponseEntity<Void>> result = deferredResult(conversionTimeoutMillis);
+        locate(id, extension).
+                switchIfEmpty(catalogService.read(id).flatMap(imageMetadata -> imageConversionService.resolveStorageKey(imageMetadata, extension))).
+                map(storageKey -> redirect(storageService.resolveURL(storageKey))).
+                defaultIfEmpty(ResponseEntity.notFound().build()).
+                subscribe(result::setResult, result::setErrorResult);
 
-        try {
-            response.sendRedirect(storageService.resolveURL(
-                    imageMetadata.resolveStorageKey(extension)).toString());
-        } catch (IOException e) {
-            throw Throwables.propagate(e);
-        }
+        return result;
     }
 
     @RequestMapping(value = "urls", method = RequestMethod.POST)
     public DeferredResult<Map<String, URL>> bulkRetrieval(@RequestBody Set<String> ids, @RequestParam(required = false) String format)
-            throws UnsupportedFormatException, NotFoundException {
+            throws UnsupportedFormatException {
         if (!StringUtils.isEmpty(format)) {
             ensureFormatSupported(format);
         }
-        Map<String, ImageMetadata> imagesMetadata =
-                ids.parallelStream().map(catalogService::read).filter(imageMetadata -> imageMetadata != null).
-                        collect(Collectors.toMap(ImageMetadata::getId, imageMetadata -> imageMetadata));
-
-        ids.removeAll(imagesMetadata.keySet());
-        if (!ids.isEmpty()) {
-            throw new NotFoundException(
-                    String.format("Following ids are not found: [%s]", Joiner.on(',').join(ids)));
-        }
 
-        DeferredResult<Map<String, URL>> result = new DeferredResult<>();
+        DeferredResult<Map<String, URL>> result = deferredResult(bulkTimeoutMillis);
 
-        Observable.from(imagesMetadata.values()).
-                flatMap(imageMetadata -> {
-                    if (imageMetadata.supports(format)) {
-                        return Observable.just(imageMetadata.getId());
-                    } else {
-                        return convertImageToFormatAndStore(imageMetadata, format).
-                                map(dummy -> imageMetadata.getId());
+        Observable<Observable<Map<String, URL>>> resolutions = catalogService.readAll(ids).
+                flatMap(imagesMetadata -> {
+                    Set<String> missingIds = Sets.difference(ids, imagesMetadata.keySet());
+                    if (!missingIds.isEmpty()) {
+                        return Observable.<ImageMetadata>error(new NotFoundException(
+                                String.format("Following ids are not found: [%s]", Joiner.on(',').join(missingIds))));
                     }
+                    return Observable.from(imagesMetadata.values());
                 }).
-                map(id ->
-                        Collections.singletonMap(id, storageService.resolveURL(
-                                imagesMetadata.get(id).resolveStorageKey(format)))
-                ).reduce(Maps.<String, URL>newHashMap(), (m1, m2) -> {
+                map(imageMetadata -> imageConversionService.resolveStorageKey(imageMetadata, format).
+                        map(storageKey -> Collections.singletonMap(imageMetadata.getId(),
+                                storageService.resolveURL(storageKey))));
+        Observable.merge(resolutions, bulkConcurrency).
+                reduce(Maps.<String, URL>newHashMap(), (m1, m2) -> {
             (m1).putAll(m2);
             return m1;
         }).subscribe(result::setResult, result::setErrorResult);
@@ -128,29 +130,72 @@ public class AccessResource {
         return result;
     }
 
-    private Observable<Void> convertImageToFormatAndStore(ImageMetadata imageMetadata, String format) {
-        return storageService.retrieve(imageMetadata.resolveStorageKey(null)).
-                map(is -> {
-                    try {
-                        return IOUtils.toByteArray(is);
-                    } catch (IOException e) {
-                        throw Throwables.propagate(e);
-                    }
-                }).flatMap(data ->
-                conversionService.convertImagePayload(new TypedByteArray(APPLICATION_OCTET_STREAM_VALUE, data), format)).
-                flatMap(conversionResponse -> {
-                    try {
-                        return storageService.store(
-                                imageMetadata.resolveStorageKey(format), format,
-                                conversionResponse.getBody().in(),
-                                conversionResponse.getBody().length());
-                    } catch (IOException e) {
-                        throw Throwables.propagate(e);
-                    }
-                }).map(ignored -> {
-            catalogService.update(imageMetadata);
-            return null;
-        });
+    @RequestMapping(value = "urls", method = RequestMethod.POST, produces = NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamBulkRetrieval(@RequestBody Set<String> ids,
+                                                                   @RequestParam(required = false) String format)
+            throws UnsupportedFormatException {
+        if (!StringUtils.isEmpty(format)) {
+            ensureFormatSupported(format);
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkTimeoutMillis);
+
+        Subscription subscription = catalogService.readAll(ids).
+                flatMap(imagesMetadata -> {
+                    Map<Boolean, List<ImageMetadata>> byConversion = imagesMetadata.values().stream().
+                            collect(Collectors.partitioningBy(imageMetadata -> imageMetadata.supports(format)));
+                    return Observable.concat(
+                            Observable.from(Sets.difference(ids, imagesMetadata.keySet())).
+                                    map(id -> line(id, "error", String.format("Image [%s] is not found", id))),
+                            Observable.from(byConversion.get(true)).
+                                    concatMap(imageMetadata -> resolveLine(imageMetadata, format)),
+                            Observable.merge(Observable.from(byConversion.get(false)).
+                                    map(imageMetadata -> resolveLine(imageMetadata, format)), bulkConcurrency));
+                }).
+                subscribe(line -> send(emitter, line), emitter::completeWithError, emitter::complete);
+        emitter.onTimeout(subscription::unsubscribe);
+
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    private Observable<Map<String, String>> resolveLine(ImageMetadata imageMetadata, String format) {
+        return imageConversionService.resolveStorageKey(imageMetadata, format).
+                map(storageKey -> line(imageMetadata.getId(), "url", storageService.resolveURL(storageKey).toString())).
+                onErrorReturn(e -> line(imageMetadata.getId(), "error", e.getMessage()));
+    }
+
+    private Map<String, String> line(String id, String field, String value) {
+        return ImmutableMap.of("id", id, field, String.valueOf(value));
+    }
+
+    private void send(ResponseBodyEmitter emitter, Map<String, String> line) {
+        try {
+            emitter.send(objectMapper.writeValueAsString(line) + '\n', NDJSON);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private <T> DeferredResult<T> deferredResult(long timeoutMillis) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMillis);
+        result.onTimeout(() -> result.setErrorResult(
+                new ServiceUnavailableException("Image is still being converted, try again later")));
+        return result;
+    }
+
+    private ResponseEntity<Void> redirect(URL url) {
+        return ResponseEntity.status(HttpStatus.FOUND).
+                cacheControl(cacheControl()).
+                header(HttpHeaders.LOCATION, url.toString()).
+                build();
+    }
+
+    private CacheControl cacheControl() {
+        return CacheControl.maxAge(storageService.resolveURLMaxAge(), TimeUnit.SECONDS).cachePublic();
+    }
+
+    private Observable<String> locate(String id, String format) {
+        return imageIdFilter.mightContain(id) ? storageLayout.locate(id, format) : Observable.empty();
     }
 
     private void ensureFormatSupported(String format) throws UnsupportedFormatException {
@@ -0,0 +1,42 @@
+package com.progimage.repository.resource;
+
+import com.progimage.exception.BadRequestException;
+import com.progimage.exception.NotFoundException;
+import com.progimage.exception.UnsupportedFormatException;
+import com.progimage.repository.model.ConversionJob;
+import com.progimage.repository.service.ConversionJobService;
+import com.progimage.repository.validators.ValidImage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/progimage/repository/jobs")
+public class ConversionJobResource {
+
+    @Autowired
+    private ConversionJobService conversionJobService;
+
+    @RequestMapping(value = "conversion", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ConversionJob startConversion(@RequestBody ConversionJob job) throws UnsupportedFormatException {
+        if (!ValidImage.SUPPORTED_FORMATS.contains(job.getFormat())) {
+            throw new UnsupportedFormatException(
+                    String.format("Requested image format [%s] is not supported", job.getFormat()));
+        }
+        if (job.isAll() == !CollectionUtils.isEmpty(job.getIds())) {
+            throw new BadRequestException("Either a list of ids or all images should be requested for conversion");
+        }
+        return conversionJobService.start(job);
+    }
+
+    @RequestMapping(value = "conversion/{jobId}", method = RequestMethod.GET)
+    public ConversionJob conversionStatus(@PathVariable String jobId) throws NotFoundException {
+        ConversionJob job = conversionJobService.status(jobId);
+        if (job == null) {
+            throw new NotFoundException(String.format("Conversion job [%s] is not found", jobId));
+        }
+        return job;
+    }
+}
@@ -0,0 +1,31 @@
+package com.progimage.repository.resource;
+
+import com.progimage.exception.BadRequestException;
+import com.progimage.exception.ConflictException;
+import com.progimage.repository.service.StorageLayout;
+import com.progimage.repository.service.StorageLayoutMigration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/progimage/repository/layout")
+public class LayoutResource {
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private StorageLayoutMigration storageLayoutMigration;
+
+    @RequestMapping(value = "migration", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void migrate() {
+        if (!storageLayout.isDeterministic()) {
+            throw new BadRequestException("Deterministic storage layout is not enabled");
+        }
+        if (!storageLayoutMigration.start()) {
+            throw new ConflictException("Migration is already running");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.progimage.repository.resource;
+
+import com.progimage.exception.NotFoundException;
+import com.progimage.repository.service.impl.LocalFileStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@RestController
+@RequestMapping("/progimage/repository/storage")
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class StorageResource {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private LocalFileStorageService storageService;
+
+    @RequestMapping(value = "{key}", method = RequestMethod.GET)
+    public void download(@PathVariable String key, HttpServletRequest request,
+                         HttpServletResponse response) throws NotFoundException, IOException {
+        Path path = storageService.resolvePath(key);
+        String format = storageService.resolveFormat(path);
+        long size = Files.size(path);
+
+        response.setContentType("image/" + format);
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(size));
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, String.format("inline; filename=\"%s.%s\"", key, format));
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            for (long position = 0; position < size; ) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+}
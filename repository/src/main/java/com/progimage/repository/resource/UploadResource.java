@@ -1,23 +1,31 @@
 package com.progimage.repository.resource;
 
+import com.progimage.repository.model.ImageDescriptor;
 import com.progimage.repository.model.ImageMetadata;
 import com.progimage.repository.service.CatalogService;
+import com.progimage.repository.service.ImageIdFilter;
+import com.progimage.repository.service.ImageInspector;
+import com.progimage.repository.service.PreConversionService;
+import com.progimage.repository.service.StorageLayout;
 import com.progimage.repository.service.StorageService;
 import com.progimage.repository.validators.ValidImage;
 import com.google.common.base.Throwables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 import rx.Observable;
-import rx.schedulers.Schedulers;
 
 import java.io.IOException;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import static org.springframework.util.MimeTypeUtils.MULTIPART_FORM_DATA_VALUE;
 
@@ -32,15 +40,42 @@ public class UploadResource {
     @Autowired
     private CatalogService catalogService;
 
+    @Autowired
+    private ImageIdFilter imageIdFilter;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    private ImageInspector imageInspector;
+
+    @Autowired
+    private PreConversionService preConversionService;
+
+    @Value("${catalog.deduplication.enabled}")
+    private boolean deduplicationEnabled;
+
+    @Value("${upload.batch.concurrency}")
+    private int batchConcurrency;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(UploadResource.class);
 
+    private static final int CATALOG_FLUSH_SIZE = 25;
+
     @RequestMapping(value = "/bulk", method = RequestMethod.POST, consumes = MULTIPART_FORM_DATA_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
     public DeferredResult<List<String>> batchUpload(@RequestParam("file") @ValidImage MultipartFile[] multipartFiles) {
         DeferredResult<List<String>> result = new DeferredResult<>();
-        Observable.from(multipartFiles).
-                subscribeOn(Schedulers.io()).
-                flatMap(this::store).toList().subscribe(result::setResult, result::setErrorResult);
+        Map<MultipartFile, ImageDescriptor> descriptors = new IdentityHashMap<>();
+        for (MultipartFile multipartFile : multipartFiles) {
+            descriptors.put(multipartFile, describe(multipartFile));
+        }
+        Observable.merge(Observable.from(multipartFiles).
+                        map(file -> storeOriginal(file, descriptors.get(file))), batchConcurrency).
+                buffer(CATALOG_FLUSH_SIZE).
+                flatMap(this::catalog).
+                flatMap(ids -> Observable.from(ids)).
+                toList().subscribe(result::setResult, result::setErrorResult);
 
         return result;
     }
@@ -49,25 +84,73 @@ public class UploadResource {
     @ResponseStatus(HttpStatus.CREATED)
     public DeferredResult<String> upload(@RequestParam("file") @ValidImage MultipartFile multipartFile) {
         DeferredResult<String> result = new DeferredResult<>();
-        Observable.just(multipartFile).
-                subscribeOn(Schedulers.io()).
-                flatMap(this::store).subscribe(result::setResult, result::setErrorResult);
+        ImageDescriptor descriptor = describe(multipartFile);
+        store(multipartFile, descriptor).subscribe(result::setResult, result::setErrorResult);
 
         return result;
     }
 
-    private Observable<String> store(MultipartFile file) {
+    private Observable<String> store(MultipartFile file, ImageDescriptor descriptor) {
+        return storeOriginal(file, descriptor).
+                flatMap(imageMetadata -> catalogService.create(imageMetadata).
+                        doOnNext(id -> preConversionService.submit(imageMetadata))).
+                doOnNext(imageIdFilter::put);
+    }
+
+    private Observable<List<String>> catalog(List<ImageMetadata> imagesMetadata) {
+        return catalogService.createAll(imagesMetadata).
+                doOnNext(ids -> ids.forEach(imageIdFilter::put)).
+                doOnNext(ids -> imagesMetadata.forEach(preConversionService::submit));
+    }
+
+    private ImageDescriptor describe(MultipartFile file) {
+        try {
+            return imageInspector.describe(file);
+        } catch (IOException e) {
+            LOGGER.error("Unable to inspect file", e);
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private Observable<ImageMetadata> storeOriginal(MultipartFile file, ImageDescriptor descriptor) {
         String fileName = file.getOriginalFilename();
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(UUID.randomUUID().toString());
+        imageMetadata.setName(fileName);
+        imageMetadata.describe(descriptor);
+        return findDuplicate(descriptor).
+                map(duplicate -> shareStorage(imageMetadata, duplicate, extension)).
+                switchIfEmpty(Observable.defer(() -> storeContent(file, imageMetadata, extension)));
+    }
+
+    private Observable<ImageMetadata> findDuplicate(ImageDescriptor descriptor) {
+        if (!deduplicationEnabled) {
+            return Observable.empty();
+        }
+        return catalogService.findByContentHash(descriptor.getContentHash()).
+                onErrorResumeNext(e -> {
+                    LOGGER.warn("Unable to look up duplicates by content hash, storing the file as new", e);
+                    return Observable.empty();
+                });
+    }
+
+    private ImageMetadata shareStorage(ImageMetadata imageMetadata, ImageMetadata duplicate, String extension) {
+        LOGGER.info("File [{}] duplicates image [{}], sharing its storage", imageMetadata.getName(), duplicate.getId());
+        imageMetadata.getFormatsMapping().putAll(duplicate.getFormatsMapping());
+        imageMetadata.getFormatsMapping().put(extension, duplicate.getFormatsMapping().get(duplicate.getOriginalFormat()));
+        imageMetadata.setOriginalFormat(extension);
+        return imageMetadata;
+    }
+
+    private Observable<ImageMetadata> storeContent(MultipartFile file, ImageMetadata imageMetadata, String extension) {
         LOGGER.info("Uploading file [{}] with size [{}]",
-                fileName, file.getSize());
+                imageMetadata.getName(), file.getSize());
         try {
-            String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
-            ImageMetadata imageMetadata = new ImageMetadata();
             imageMetadata.setOriginalFormat(extension);
-            imageMetadata.setName(fileName);
-            catalogService.create(imageMetadata);
+            storageLayout.assignOriginal(imageMetadata);
             return storageService.store(imageMetadata.resolveStorageKey(null), extension, file.getInputStream(), file.getSize()).
-                    map(ignored -> imageMetadata.getId());
+                    map(ignored -> imageMetadata);
         } catch (IOException e) {
             LOGGER.error("Unable to upload file", e);
             throw Throwables.propagate(e);
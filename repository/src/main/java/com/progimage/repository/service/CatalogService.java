@@ -1,13 +1,32 @@
 package com.progimage.repository.service;
 
 import com.progimage.repository.model.ImageMetadata;
+import rx.Observable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface CatalogService {
-    String create(ImageMetadata imageMetadata);
+    Observable<String> create(ImageMetadata imageMetadata);
+
+    Observable<List<String>> createAll(Collection<ImageMetadata> imagesMetadata);
+
+    Observable<ImageMetadata> update(ImageMetadata imageMetadata);
+
+    Observable<ImageMetadata> addFormat(String id, String format, String storageKey);
+
+    Observable<ImageMetadata> replaceFormat(String id, String format, String expectedStorageKey, String storageKey);
+
+    Observable<ImageMetadata> read(String id);
+
+    Observable<Map<String, ImageMetadata>> readAll(Collection<String> ids);
+
+    Observable<ImageMetadata> findByContentHash(String contentHash);
 
-    void update(ImageMetadata imageMetadata);
+    Observable<Void> delete(ImageMetadata imageMetadata);
 
-    ImageMetadata read(String id);
+    Iterable<String> readIds();
 
-    void delete(ImageMetadata imageMetadata);
+    Observable<List<String>> readIds(String exclusiveStartId, int limit);
 }
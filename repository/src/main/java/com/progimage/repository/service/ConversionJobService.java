@@ -0,0 +1,286 @@
+package com.progimage.repository.service;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.google.common.collect.Lists;
+import com.progimage.repository.model.ConversionJob;
+import com.progimage.repository.model.ConversionJobChunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ConversionJobService {
+
+    private enum Outcome {CONVERTED, SKIPPED, FAILED}
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConversionJobService.class);
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private ImageConversionService imageConversionService;
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    @Qualifier("jobWorkQueue")
+    private WorkQueue jobWorkQueue;
+
+    @Value("${dynamodb.jobs.table.name}")
+    private String tableName;
+
+    @Value("${conversion.backfill.concurrency}")
+    private int concurrency;
+
+    @Value("${conversion.backfill.page-size}")
+    private int pageSize;
+
+    @Value("${conversion.backfill.lease-seconds}")
+    private long leaseSeconds;
+
+    @Value("${conversion.backfill.resume-on-startup}")
+    private boolean resumeOnStartup;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private DynamoDBMapperConfig config;
+
+    private Subscription resumes;
+
+    private final ConcurrentMap<String, ConversionJob> runningJobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        config = new DynamoDBMapperConfig(new DynamoDBMapperConfig.TableNameOverride(tableName));
+        if (resumeOnStartup) {
+            resumes = Observable.timer(0, leaseSeconds, TimeUnit.SECONDS, Schedulers.io()).
+                    onBackpressureDrop().
+                    subscribe(ignored -> resume());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (resumes != null) {
+            resumes.unsubscribe();
+        }
+    }
+
+    public ConversionJob start(ConversionJob job) {
+        job.setId(UUID.randomUUID().toString());
+        job.setStatus(ConversionJob.RUNNING);
+        job.setCursor(null);
+        job.setProcessed(0);
+        job.setConverted(0);
+        job.setSkipped(0);
+        job.setFailed(0);
+        job.setVersion(null);
+        job.setOwner(instanceId);
+        job.setLeaseExpiresAt(leaseExpiry());
+        job.setCreatedAt(new Date());
+        job.setStartedAt(job.getCreatedAt());
+        job.setProcessedBeforeStart(0);
+        job.setUpdatedAt(job.getCreatedAt());
+        if (!job.isAll()) {
+            storeIds(job);
+        }
+        dynamoDBMapper.save(job, config);
+        try {
+            run(job);
+        } catch (RejectedExecutionException e) {
+            job.setStatus(ConversionJob.FAILED);
+            job.setUpdatedAt(new Date());
+            dynamoDBMapper.save(job, config);
+            throw e;
+        }
+        return job;
+    }
+
+    public ConversionJob status(String jobId) {
+        ConversionJob job = runningJobs.get(jobId);
+        return job != null ? job : dynamoDBMapper.load(ConversionJob.class, jobId, config);
+    }
+
+    public void resume() {
+        try {
+            DynamoDBScanExpression runningJobsExpression = new DynamoDBScanExpression().
+                    withFilterConditionEntry("status", new Condition().
+                            withComparisonOperator(ComparisonOperator.EQ).
+                            withAttributeValueList(new AttributeValue(ConversionJob.RUNNING)));
+            for (ConversionJob job : dynamoDBMapper.scan(ConversionJob.class, runningJobsExpression, config)) {
+                if (runningJobs.containsKey(job.getId()) || !leaseExpired(job) || !claim(job)) {
+                    continue;
+                }
+                LOGGER.info("Resuming conversion job [{}] to format [{}] after [{}] images",
+                        job.getId(), job.getFormat(), job.getProcessed());
+                run(job);
+            }
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Job queue is full, remaining conversion jobs will be resumed once their lease expires");
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to resume conversion jobs", e);
+        }
+    }
+
+    private boolean leaseExpired(ConversionJob job) {
+        return job.getLeaseExpiresAt() == null || job.getLeaseExpiresAt().before(new Date());
+    }
+
+    private boolean claim(ConversionJob job) {
+        job.setOwner(instanceId);
+        job.setLeaseExpiresAt(leaseExpiry());
+        job.setStartedAt(new Date());
+        job.setProcessedBeforeStart(job.getProcessed());
+        job.setUpdatedAt(job.getStartedAt());
+        try {
+            dynamoDBMapper.save(job, config);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            LOGGER.info("Conversion job [{}] is claimed by another instance", job.getId());
+            return false;
+        }
+    }
+
+    private Date leaseExpiry() {
+        return new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(leaseSeconds));
+    }
+
+    private void storeIds(ConversionJob job) {
+        List<List<String>> chunks = Lists.partition(job.getIds(), pageSize);
+        List<ConversionJobChunk> items = Lists.newArrayListWithCapacity(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            items.add(new ConversionJobChunk(job.getId(), i, chunks.get(i)));
+        }
+        List<FailedBatch> failedBatches = dynamoDBMapper.batchWrite(items, Collections.emptyList(), config);
+        if (!failedBatches.isEmpty()) {
+            throw new IllegalStateException(String.format("Unable to store ids of conversion job [%s]", job.getId()),
+                    failedBatches.get(0).getException());
+        }
+        job.setTotal(job.getIds().size());
+        job.setChunkSize(pageSize);
+        job.setIds(null);
+    }
+
+    private void run(ConversionJob job) {
+        if (runningJobs.putIfAbsent(job.getId(), job) == null) {
+            try {
+                jobWorkQueue.executor().execute(() -> process(job));
+            } catch (RejectedExecutionException e) {
+                runningJobs.remove(job.getId());
+                throw e;
+            }
+        }
+    }
+
+    private void process(ConversionJob job) {
+        try {
+            List<String> page;
+            while (!(page = nextPage(job)).isEmpty()) {
+                Observable.merge(Observable.from(page).map(id -> convert(id, job.getFormat())), concurrency).
+                        toBlocking().
+                        forEach(outcome -> record(job, outcome));
+                job.setCursor(job.isAll() ? page.get(page.size() - 1) : String.valueOf(position(job) + page.size()));
+                job.setLeaseExpiresAt(leaseExpiry());
+                job.setUpdatedAt(new Date());
+                dynamoDBMapper.save(job, config);
+            }
+            job.setStatus(ConversionJob.COMPLETED);
+            LOGGER.info("Conversion job [{}] finished: [{}] converted, [{}] skipped, [{}] failed",
+                    job.getId(), job.getConverted(), job.getSkipped(), job.getFailed());
+            complete(job);
+        } catch (ConditionalCheckFailedException e) {
+            LOGGER.warn("Conversion job [{}] was claimed by another instance, stopping", job.getId());
+        } catch (RuntimeException e) {
+            job.setStatus(ConversionJob.FAILED);
+            LOGGER.error(String.format("Conversion job [%s] failed", job.getId()), e);
+            complete(job);
+        } finally {
+            runningJobs.remove(job.getId());
+        }
+    }
+
+    private void complete(ConversionJob job) {
+        job.setLeaseExpiresAt(null);
+        job.setUpdatedAt(new Date());
+        try {
+            dynamoDBMapper.save(job, config);
+        } catch (ConditionalCheckFailedException e) {
+            LOGGER.warn("Conversion job [{}] was claimed by another instance before it finished", job.getId());
+        }
+    }
+
+    private List<String> nextPage(ConversionJob job) {
+        if (job.isAll()) {
+            return catalogService.readIds(job.getCursor(), pageSize).toBlocking().single();
+        }
+        int position = position(job);
+        if (position >= job.getTotal()) {
+            return Collections.emptyList();
+        }
+        ConversionJobChunk chunk = dynamoDBMapper.load(ConversionJobChunk.class,
+                ConversionJobChunk.id(job.getId(), position / job.getChunkSize()), config);
+        List<String> ids = chunk.getIds();
+        int from = position % job.getChunkSize();
+        return ids.subList(from, Math.min(from + pageSize, ids.size()));
+    }
+
+    private int position(ConversionJob job) {
+        return job.getCursor() == null ? 0 : Integer.parseInt(job.getCursor());
+    }
+
+    private Observable<Outcome> convert(String id, String format) {
+        return catalogService.read(id).
+                flatMap(imageMetadata -> imageMetadata.supports(format) ?
+                        Observable.just(Outcome.SKIPPED) :
+                        imageConversionService.convertImageToFormatAndStore(imageMetadata, format).map(storageKey -> Outcome.CONVERTED)).
+                switchIfEmpty(Observable.defer(() -> {
+                    LOGGER.warn("Image [{}] is not found, skipping conversion to [{}]", id, format);
+                    return Observable.just(Outcome.FAILED);
+                })).
+                onErrorReturn(e -> {
+                    LOGGER.error(String.format("Unable to convert image [%s] to format [%s]", id, format), e);
+                    return Outcome.FAILED;
+                });
+    }
+
+    private void record(ConversionJob job, Outcome outcome) {
+        job.setProcessed(job.getProcessed() + 1);
+        switch (outcome) {
+            case CONVERTED:
+                job.setConverted(job.getConverted() + 1);
+                break;
+            case SKIPPED:
+                job.setSkipped(job.getSkipped() + 1);
+                break;
+            default:
+                job.setFailed(job.getFailed() + 1);
+        }
+        job.setUpdatedAt(new Date());
+    }
+}
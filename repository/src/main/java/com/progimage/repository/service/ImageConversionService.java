@@ -0,0 +1,86 @@
+package com.progimage.repository.service;
+
+import com.google.common.base.Throwables;
+import com.progimage.client.ServiceGenerator;
+import com.progimage.client.mime.TypedInputStream;
+import com.progimage.client.service.ConversionService;
+import com.progimage.repository.model.ImageMetadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.springframework.http.MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+@Service
+public class ImageConversionService {
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Autowired
+    @Qualifier("conversionWorkQueue")
+    private WorkQueue conversionWorkQueue;
+
+    @Value("${conversion.service.url}")
+    private String conversionServiceUrl;
+
+    private ConversionService conversionService;
+
+    private final ConcurrentMap<String, Observable<String>> inFlightConversions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        conversionService = ServiceGenerator.createService(ConversionService.class, conversionServiceUrl,
+                conversionWorkQueue.executor());
+    }
+
+    public Observable<String> resolveStorageKey(ImageMetadata imageMetadata, String format) {
+        Observable<String> storageKey = imageMetadata.supports(format) ?
+                Observable.just(imageMetadata.resolveStorageKey(format)) :
+                convertImageToFormatAndStore(imageMetadata, format);
+        return storageKey.doOnNext(key -> storageLayout.markPresent(imageMetadata, format, key));
+    }
+
+    public Observable<String> convertImageToFormatAndStore(ImageMetadata imageMetadata, String format) {
+        String conversionKey = imageMetadata.getId() + ':' + format;
+        Observable<String> conversion = inFlightConversions.computeIfAbsent(conversionKey, key ->
+                doConvertImageToFormatAndStore(imageMetadata, format).
+                        finallyDo(() -> inFlightConversions.remove(key)).
+                        cache());
+        return conversion.map(storageKey -> {
+            imageMetadata.getFormatsMapping().put(format, storageKey);
+            return storageKey;
+        });
+    }
+
+    private Observable<String> doConvertImageToFormatAndStore(ImageMetadata imageMetadata, String format) {
+        return storageService.retrieve(imageMetadata.resolveStorageKey(null)).
+                flatMap(is ->
+                        conversionService.convertImagePayload(new TypedInputStream(APPLICATION_OCTET_STREAM_VALUE, is), format)).
+                flatMap(conversionResponse -> {
+                    try {
+                        return storageService.store(
+                                storageLayout.resolveStorageKey(imageMetadata, format), format,
+                                conversionResponse.getBody().in(),
+                                conversionResponse.getBody().length());
+                    } catch (IOException e) {
+                        throw Throwables.propagate(e);
+                    }
+                }).
+                flatMap(storageKey -> catalogService.addFormat(imageMetadata.getId(), format, storageKey)).
+                map(updated -> updated.getFormatsMapping().get(format));
+    }
+}
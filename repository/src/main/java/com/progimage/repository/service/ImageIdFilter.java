@@ -0,0 +1,183 @@
+package com.progimage.repository.service;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Service
+public class ImageIdFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImageIdFilter.class);
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Value("${catalog.filter.enabled}")
+    private boolean enabled;
+
+    @Value("${catalog.filter.expected-insertions}")
+    private long expectedInsertions;
+
+    @Value("${catalog.filter.false-positive-rate}")
+    private double falsePositiveRate;
+
+    @Value("${catalog.filter.rebuild-interval-seconds}")
+    private long rebuildIntervalSeconds;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Generation current;
+
+    private Generation rebuilding;
+
+    private Subscription rebuilds;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        Observable<Long> schedule = rebuildIntervalSeconds > 0 ?
+                Observable.timer(0, rebuildIntervalSeconds, TimeUnit.SECONDS, Schedulers.io()) :
+                Observable.timer(0, TimeUnit.SECONDS, Schedulers.io());
+        rebuilds = schedule.
+                onBackpressureDrop().
+                subscribe(ignored -> rebuild());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuilds != null) {
+            rebuilds.unsubscribe();
+        }
+    }
+
+    public boolean mightContain(String id) {
+        Generation generation = current;
+        if (generation == null) {
+            return true;
+        }
+        lock.readLock().lock();
+        try {
+            return generation.mightContain(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String id) {
+        lock.writeLock().lock();
+        try {
+            if (current != null) {
+                current.put(id);
+            }
+            if (rebuilding != null) {
+                rebuilding.put(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void rebuild() {
+        Generation next = new Generation(expectedInsertions, falsePositiveRate * (1 - TIGHTENING_RATIO));
+        lock.writeLock().lock();
+        try {
+            rebuilding = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            long count = 0;
+            for (String id : catalogService.readIds()) {
+                lock.writeLock().lock();
+                try {
+                    next.put(id);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                count++;
+            }
+            lock.writeLock().lock();
+            try {
+                current = next;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            LOGGER.info("Image id filter rebuilt with [{}] ids", count);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to rebuild image id filter", e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (rebuilding == next) {
+                    rebuilding = null;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static class Generation {
+
+        private final List<BloomFilter<CharSequence>> filters = Lists.newArrayList();
+
+        private long capacity;
+
+        private double falsePositiveRate;
+
+        private long insertions;
+
+        Generation(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            filters.add(newFilter());
+        }
+
+        boolean mightContain(String id) {
+            for (BloomFilter<CharSequence> filter : filters) {
+                if (filter.mightContain(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void put(String id) {
+            if (insertions >= capacity) {
+                capacity *= GROWTH_FACTOR;
+                falsePositiveRate *= TIGHTENING_RATIO;
+                insertions = 0;
+                filters.add(newFilter());
+            }
+            filters.get(filters.size() - 1).put(id);
+            insertions++;
+        }
+
+        private BloomFilter<CharSequence> newFilter() {
+            return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                    (int) Math.min(capacity, Integer.MAX_VALUE), falsePositiveRate);
+        }
+    }
+}
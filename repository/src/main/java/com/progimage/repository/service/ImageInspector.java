@@ -0,0 +1,96 @@
+package com.progimage.repository.service;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.progimage.repository.model.ImageDescriptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+@Service
+public class ImageInspector {
+
+    private static final String DESCRIPTORS_ATTRIBUTE = ImageInspector.class.getName() + ".descriptors";
+
+    @Value("${image.max-width}")
+    private int maxWidth;
+
+    @Value("${image.max-height}")
+    private int maxHeight;
+
+    public ImageDescriptor describe(MultipartFile file) throws IOException {
+        Map<MultipartFile, ImageDescriptor> descriptors = requestDescriptors();
+        ImageDescriptor descriptor = descriptors.get(file);
+        if (descriptor == null) {
+            try (InputStream data = file.getInputStream()) {
+                descriptor = inspect(data);
+            }
+            if (descriptor != null) {
+                descriptors.put(file, descriptor);
+            }
+        }
+        return descriptor;
+    }
+
+    public ImageDescriptor inspect(InputStream data) throws IOException {
+        CountingInputStream counting = new CountingInputStream(data);
+        HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), counting);
+        try (ImageInputStream input = new MemoryCacheImageInputStream(hashing)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                String format = reader.getFormatName().toLowerCase();
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ByteStreams.copy(hashing, ByteStreams.nullOutputStream());
+                return new ImageDescriptor(format, width, height, counting.getCount(), hashing.hash().toString());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public boolean isWithinLimits(ImageDescriptor descriptor) {
+        return descriptor.getWidth() <= maxWidth && descriptor.getHeight() <= maxHeight;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<MultipartFile, ImageDescriptor> requestDescriptors() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new IdentityHashMap<>();
+        }
+        Object descriptors = attributes.getAttribute(DESCRIPTORS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (descriptors == null) {
+            descriptors = new IdentityHashMap<MultipartFile, ImageDescriptor>();
+            attributes.setAttribute(DESCRIPTORS_ATTRIBUTE, descriptors, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<MultipartFile, ImageDescriptor>) descriptors;
+    }
+}
@@ -0,0 +1,82 @@
+package com.progimage.repository.service;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.progimage.repository.model.ImageMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class PreConversionService implements PublicMetrics {
+
+    @Autowired
+    private ImageConversionService imageConversionService;
+
+    @Autowired
+    @Qualifier("warmWorkQueue")
+    private WorkQueue warmWorkQueue;
+
+    @Value("${conversion.warm-formats}")
+    private String[] warmFormats;
+
+    @Value("${conversion.warm.attempts}")
+    private int attempts;
+
+    @Value("${conversion.warm.backoff-millis}")
+    private long backoffMillis;
+
+    private final AtomicLong converted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(PreConversionService.class);
+
+    public void submit(ImageMetadata imageMetadata) {
+        for (String format : warmFormats) {
+            if (!imageMetadata.supports(format)) {
+                ImageMetadata snapshot = new ImageMetadata(imageMetadata);
+                try {
+                    warmWorkQueue.executor().execute(() -> convert(snapshot, format));
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("Pre-conversion queue is full, skipping conversion of image [{}] to format [{}]",
+                            imageMetadata.getId(), format);
+                }
+            }
+        }
+    }
+
+    private void convert(ImageMetadata imageMetadata, String format) {
+        try {
+            Observable.defer(() -> imageConversionService.convertImageToFormatAndStore(imageMetadata, format)).
+                    retryWhen(errors -> errors.zipWith(Observable.range(1, attempts), (error, attempt) -> {
+                        if (attempt == attempts) {
+                            throw Throwables.propagate(error);
+                        }
+                        return attempt;
+                    }).flatMap(attempt -> Observable.timer(backoffMillis << attempt, TimeUnit.MILLISECONDS))).
+                    toBlocking().single();
+            converted.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            LOGGER.error(String.format("Unable to pre-convert image [%s] to format [%s]", imageMetadata.getId(), format), e);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return ImmutableList.of(
+                new Metric<>("conversion.warm.converted", converted.get()),
+                new Metric<>("conversion.warm.failed", failed.get()));
+    }
+}
@@ -0,0 +1,128 @@
+package com.progimage.repository.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.progimage.repository.model.ImageMetadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import rx.Observable;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class StorageLayout {
+
+    private static final String DETERMINISTIC = "deterministic";
+    private static final String ORIGINAL = "original";
+
+    @Autowired
+    private StorageService storageService;
+
+    @Value("${storage.layout}")
+    private String layout;
+
+    @Value("${storage.layout.presence-cache-size}")
+    private long presenceCacheSize;
+
+    @Value("${storage.layout.absence-cache-seconds}")
+    private long absenceCacheSeconds;
+
+    private Cache<String, String> presentKeys;
+
+    private Cache<String, Boolean> absentKeys;
+
+    @PostConstruct
+    public void init() {
+        presentKeys = CacheBuilder.newBuilder().
+                maximumSize(presenceCacheSize).
+                build();
+        absentKeys = CacheBuilder.newBuilder().
+                maximumSize(presenceCacheSize).
+                expireAfterWrite(absenceCacheSeconds, TimeUnit.SECONDS).
+                build();
+    }
+
+    public boolean isDeterministic() {
+        return DETERMINISTIC.equals(layout);
+    }
+
+    public String storageKey(String id, String format) {
+        return id + '/' + (StringUtils.isEmpty(format) ? ORIGINAL : format);
+    }
+
+    public void assignOriginal(ImageMetadata imageMetadata) {
+        if (isDeterministic()) {
+            imageMetadata.getFormatsMapping().put(imageMetadata.getOriginalFormat(),
+                    storageKey(imageMetadata.getId(), null));
+        }
+    }
+
+    public String resolveStorageKey(ImageMetadata imageMetadata, String format) {
+        if (isDeterministic() && !imageMetadata.supports(format)) {
+            imageMetadata.getFormatsMapping().put(format, storageKey(imageMetadata.getId(), format));
+        }
+        return imageMetadata.resolveStorageKey(format);
+    }
+
+    public void markPresent(ImageMetadata imageMetadata, String format, String storageKey) {
+        if (!isDeterministic()) {
+            return;
+        }
+        String id = imageMetadata.getId();
+        if (StringUtils.isEmpty(format) || format.equals(imageMetadata.getOriginalFormat())) {
+            markPresent(storageKey(id, null), storageKey);
+            markPresent(storageKey(id, imageMetadata.getOriginalFormat()), storageKey);
+        } else {
+            markPresent(storageKey(id, format), storageKey);
+        }
+    }
+
+    private void markPresent(String locatedKey, String storageKey) {
+        presentKeys.put(locatedKey, storageKey);
+        absentKeys.invalidate(locatedKey);
+    }
+
+    public Observable<String> locate(String id, String format) {
+        if (!isDeterministic()) {
+            return Observable.empty();
+        }
+        String storageKey = storageKey(id, format);
+        return Observable.defer(() -> {
+            String presentKey = presentKeys.getIfPresent(storageKey);
+            if (presentKey != null) {
+                return Observable.just(presentKey);
+            }
+            if (absentKeys.getIfPresent(storageKey) != null) {
+                return Observable.empty();
+            }
+            return storageService.exists(storageKey).
+                    doOnNext(exists -> {
+                        if (exists) {
+                            presentKeys.put(storageKey, storageKey);
+                        } else {
+                            absentKeys.put(storageKey, Boolean.TRUE);
+                        }
+                    }).
+                    filter(exists -> exists).
+                    map(exists -> storageKey);
+        });
+    }
+
+    public boolean isMigrated(ImageMetadata imageMetadata) {
+        return imageMetadata.getFormatsMapping().entrySet().stream().
+                allMatch(mapping -> isMigrated(imageMetadata, mapping.getKey()));
+    }
+
+    public boolean isMigrated(ImageMetadata imageMetadata, String format) {
+        String storageKey = imageMetadata.getFormatsMapping().get(format);
+        return storageKey != null && storageKey.endsWith('/' + (format.equals(imageMetadata.getOriginalFormat()) ? ORIGINAL : format));
+    }
+
+    public String expectedKey(ImageMetadata imageMetadata, String format) {
+        return storageKey(imageMetadata.getId(),
+                format.equals(imageMetadata.getOriginalFormat()) ? null : format);
+    }
+}
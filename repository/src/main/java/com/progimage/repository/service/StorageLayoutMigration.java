@@ -0,0 +1,76 @@
+package com.progimage.repository.service;
+
+import com.google.common.collect.ImmutableMap;
+import com.progimage.repository.model.ImageMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class StorageLayoutMigration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageLayoutMigration.class);
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private StorageService storageService;
+
+    @Autowired
+    private StorageLayout storageLayout;
+
+    @Value("${storage.layout.migration.concurrency}")
+    private int concurrency;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public boolean start() {
+        if (!storageLayout.isDeterministic() || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        AtomicLong migrated = new AtomicLong();
+        Observable.merge(Observable.from(catalogService.readIds()).
+                        subscribeOn(Schedulers.io()).
+                        map(id -> migrate(id).
+                                onErrorResumeNext(e -> {
+                                    LOGGER.error(String.format("Unable to migrate image [%s]", id), e);
+                                    return Observable.<ImageMetadata>empty();
+                                })),
+                concurrency).
+                finallyDo(() -> running.set(false)).
+                subscribe(imageMetadata -> migrated.incrementAndGet(),
+                        e -> LOGGER.error("Storage layout migration failed", e),
+                        () -> LOGGER.info("Storage layout migration finished, [{}] images migrated", migrated.get()));
+        return true;
+    }
+
+    public Observable<ImageMetadata> migrate(String id) {
+        return catalogService.read(id).
+                filter(imageMetadata -> !storageLayout.isMigrated(imageMetadata)).
+                flatMap(imageMetadata -> Observable.from(ImmutableMap.copyOf(imageMetadata.getFormatsMapping()).entrySet()).
+                        filter(mapping -> !storageLayout.isMigrated(imageMetadata, mapping.getKey())).
+                        flatMap(mapping -> migrate(imageMetadata, mapping.getKey(), mapping.getValue())).
+                        toList().
+                        map(ignored -> imageMetadata));
+    }
+
+    private Observable<ImageMetadata> migrate(ImageMetadata imageMetadata, String format, String storageKey) {
+        String targetKey = storageLayout.expectedKey(imageMetadata, format);
+        return storageService.copy(storageKey, targetKey).
+                flatMap(copied -> catalogService.replaceFormat(imageMetadata.getId(), format, storageKey, copied)).
+                doOnNext(updated -> imageMetadata.getFormatsMapping().put(format, targetKey)).
+                switchIfEmpty(Observable.defer(() -> {
+                    LOGGER.warn("Mapping [{}] of image [{}] changed during migration, skipping it",
+                            format, imageMetadata.getId());
+                    return Observable.<ImageMetadata>empty();
+                }));
+    }
+}
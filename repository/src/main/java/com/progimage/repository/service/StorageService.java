@@ -8,4 +8,7 @@ public interface StorageService {
     Observable<String> store(String key, String format, InputStream data, long length);
     Observable<InputStream> retrieve(String key);
     URL resolveURL(String key);
+    long resolveURLMaxAge();
+    Observable<Boolean> exists(String key);
+    Observable<String> copy(String sourceKey, String targetKey);
 }
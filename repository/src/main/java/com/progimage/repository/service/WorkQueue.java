@@ -0,0 +1,58 @@
+package com.progimage.repository.service;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WorkQueue implements PublicMetrics {
+
+    private final String name;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Scheduler scheduler;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public WorkQueue(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory(name + "-"),
+                (task, pool) -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException(String.format("Work queue [%s] is full", name));
+                });
+        this.scheduler = Schedulers.from(executor);
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return ImmutableList.of(
+                new Metric<>("executor." + name + ".active", executor.getActiveCount()),
+                new Metric<>("executor." + name + ".queue", executor.getQueue().size()),
+                new Metric<>("executor." + name + ".rejected", rejected.get()));
+    }
+}
@@ -0,0 +1,165 @@
+package com.progimage.repository.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.progimage.repository.model.ImageMetadata;
+import com.progimage.repository.service.CatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Primary
+@ConditionalOnProperty(name = "catalog.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CachingCatalogService implements CatalogService, PublicMetrics {
+
+    @Autowired
+    @Qualifier("dynamoDBCatalogService")
+    private CatalogService delegate;
+
+    @Value("${catalog.cache.maximum-size}")
+    private long maximumSize;
+
+    @Value("${catalog.cache.ttl-seconds}")
+    private long ttlSeconds;
+
+    private Cache<String, ImageMetadata> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder().
+                maximumSize(maximumSize).
+                expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).
+                recordStats().
+                build();
+    }
+
+    @Override
+    public Observable<String> create(ImageMetadata imageMetadata) {
+        return delegate.create(imageMetadata).
+                doOnNext(id -> cache.put(id, new ImageMetadata(imageMetadata)));
+    }
+
+    @Override
+    public Observable<List<String>> createAll(Collection<ImageMetadata> imagesMetadata) {
+        return delegate.createAll(imagesMetadata).
+                doOnNext(ids -> imagesMetadata.forEach(imageMetadata ->
+                        cache.put(imageMetadata.getId(), new ImageMetadata(imageMetadata))));
+    }
+
+    @Override
+    public Observable<ImageMetadata> update(ImageMetadata imageMetadata) {
+        return delegate.update(imageMetadata).
+                doOnNext(updated -> cache.put(updated.getId(), new ImageMetadata(updated))).
+                doOnError(e -> cache.invalidate(imageMetadata.getId()));
+    }
+
+    @Override
+    public Observable<ImageMetadata> addFormat(String id, String format, String storageKey) {
+        return delegate.addFormat(id, format, storageKey).
+                doOnNext(updated -> cache.put(id, new ImageMetadata(updated))).
+                doOnError(e -> cache.invalidate(id));
+    }
+
+    @Override
+    public Observable<ImageMetadata> replaceFormat(String id, String format, String expectedStorageKey, String storageKey) {
+        return delegate.replaceFormat(id, format, expectedStorageKey, storageKey).
+                doOnNext(updated -> cache.put(id, new ImageMetadata(updated))).
+                switchIfEmpty(Observable.defer(() -> {
+                    cache.invalidate(id);
+                    return Observable.<ImageMetadata>empty();
+                })).
+                doOnError(e -> cache.invalidate(id));
+    }
+
+    @Override
+    public Observable<ImageMetadata> read(String id) {
+        return Observable.defer(() -> {
+            ImageMetadata imageMetadata = cache.getIfPresent(id);
+            if (imageMetadata != null) {
+                return Observable.just(new ImageMetadata(imageMetadata));
+            }
+            return delegate.read(id).
+                    doOnNext(loaded -> cache.put(id, new ImageMetadata(loaded)));
+        });
+    }
+
+    @Override
+    public Observable<Map<String, ImageMetadata>> readAll(Collection<String> ids) {
+        return Observable.defer(() -> {
+            Map<String, ImageMetadata> result = Maps.newHashMapWithExpectedSize(ids.size());
+            List<String> missingIds = Lists.newArrayList();
+            for (String id : ids) {
+                ImageMetadata imageMetadata = cache.getIfPresent(id);
+                if (imageMetadata == null) {
+                    missingIds.add(id);
+                } else {
+                    result.put(id, new ImageMetadata(imageMetadata));
+                }
+            }
+            if (missingIds.isEmpty()) {
+                return Observable.just(result);
+            }
+            return delegate.readAll(missingIds).map(loaded -> {
+                loaded.forEach((id, imageMetadata) -> {
+                    cache.put(id, new ImageMetadata(imageMetadata));
+                    result.put(id, imageMetadata);
+                });
+                return result;
+            });
+        });
+    }
+
+    @Override
+    public Observable<ImageMetadata> findByContentHash(String contentHash) {
+        return delegate.findByContentHash(contentHash).
+                doOnNext(found -> cache.put(found.getId(), new ImageMetadata(found)));
+    }
+
+    @Override
+    public Observable<Void> delete(ImageMetadata imageMetadata) {
+        return delegate.delete(imageMetadata).
+                finallyDo(() -> cache.invalidate(imageMetadata.getId()));
+    }
+
+    @Override
+    public Iterable<String> readIds() {
+        return delegate.readIds();
+    }
+
+    @Override
+    public Observable<List<String>> readIds(String exclusiveStartId, int limit) {
+        return delegate.readIds(exclusiveStartId, limit);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        return ImmutableList.of(
+                new Metric<>("catalog.cache.size", cache.size()),
+                new Metric<>("catalog.cache.hits", stats.hitCount()),
+                new Metric<>("catalog.cache.misses", stats.missCount()),
+                new Metric<>("catalog.cache.hit-ratio", stats.hitRate()),
+                new Metric<>("catalog.cache.evictions", stats.evictionCount()));
+    }
+}
@@ -1,47 +1,278 @@
 package com.progimage.repository.service.impl;
 
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.amazonaws.util.DateUtils;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.progimage.repository.model.ImageMetadata;
 import com.progimage.repository.service.CatalogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import rx.Observable;
+import rx.Subscriber;
 
 import java.sql.Date;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class DynamoDBCatalogService implements CatalogService {
 
+    @Autowired
+    private AmazonDynamoDBAsync amazonDynamoDB;
+
     @Autowired
     private DynamoDBMapper dynamoDBMapper;
 
     @Value("${dynamodb.table.name}")
     private String tableName;
 
+    @Value("${dynamodb.table.content-hash-index}")
+    private String contentHashIndex;
+
+    private static final int BATCH_LOAD_SIZE = 100;
+    private static final int BATCH_WRITE_SIZE = 25;
+    private static final int BATCH_ATTEMPTS = 5;
+    private static final long BATCH_BACKOFF_MILLIS = 50;
+
     @Override
-    public String create(ImageMetadata imageMetadata) {
-        imageMetadata.setCreatedAt(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
-        imageMetadata.setUpdatedAt(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
-        dynamoDBMapper.save(imageMetadata, new DynamoDBMapperConfig(new DynamoDBMapperConfig.TableNameOverride(tableName)));
-        return imageMetadata.getId();
+    public Observable<String> create(ImageMetadata imageMetadata) {
+        return Observable.defer(() -> {
+            prepareForCreate(imageMetadata);
+            PutItemRequest request = new PutItemRequest(tableName, ImageMetadataMarshaller.marshall(imageMetadata));
+            return Observable.<PutItemResult>create(subscriber -> amazonDynamoDB.putItemAsync(request, handler(subscriber))).
+                    map(ignored -> imageMetadata.getId());
+        });
     }
 
     @Override
-    public void update(ImageMetadata imageMetadata) {
-        imageMetadata.setUpdatedAt(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
-        dynamoDBMapper.save(imageMetadata, new DynamoDBMapperConfig(new DynamoDBMapperConfig.TableNameOverride(tableName)));
+    public Observable<List<String>> createAll(Collection<ImageMetadata> imagesMetadata) {
+        return Observable.defer(() -> {
+            imagesMetadata.forEach(this::prepareForCreate);
+            List<String> ids = imagesMetadata.stream().map(ImageMetadata::getId).collect(Collectors.toList());
+            return Observable.from(Lists.partition(Lists.newArrayList(imagesMetadata), BATCH_WRITE_SIZE)).
+                    flatMap(batch -> batchWrite(Collections.singletonMap(tableName, batch.stream().
+                            map(imageMetadata -> new WriteRequest(new PutRequest(ImageMetadataMarshaller.marshall(imageMetadata)))).
+                            collect(Collectors.toList())), 1)).
+                    toList().
+                    map(ignored -> ids);
+        });
+    }
+
+    @Override
+    public Observable<ImageMetadata> update(ImageMetadata imageMetadata) {
+        return Observable.defer(() -> {
+            imageMetadata.setUpdatedAt(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
+            PutItemRequest request = new PutItemRequest(tableName, ImageMetadataMarshaller.marshall(imageMetadata));
+            return Observable.<PutItemResult>create(subscriber -> amazonDynamoDB.putItemAsync(request, handler(subscriber))).
+                    map(ignored -> imageMetadata);
+        });
     }
 
     @Override
-    public ImageMetadata read(String id) {
-        return dynamoDBMapper.load(ImageMetadata.class, id, new DynamoDBMapperConfig(new DynamoDBMapperConfig.TableNameOverride(tableName)));
+    public Observable<ImageMetadata> addFormat(String id, String format, String storageKey) {
+        return Observable.defer(() -> {
+            UpdateItemRequest request = new UpdateItemRequest().
+                    withTableName(tableName).
+                    withKey(ImageMetadataMarshaller.key(id)).
+                    withUpdateExpression("SET #mapping.#format = if_not_exists(#mapping.#format, :storageKey), " +
+                            "#updatedAt = :updatedAt").
+                    withConditionExpression("attribute_exists(#id)").
+                    withExpressionAttributeNames(ImmutableMap.of(
+                            "#id", ImageMetadataMarshaller.ID,
+                            "#mapping", ImageMetadataMarshaller.FORMATS_MAPPING,
+                            "#format", format,
+                            "#updatedAt", ImageMetadataMarshaller.UPDATED_AT)).
+                    withExpressionAttributeValues(ImmutableMap.of(
+                            ":storageKey", new AttributeValue(storageKey),
+                            ":updatedAt", new AttributeValue(DateUtils.formatISO8601Date(
+                                    Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)))))).
+                    withReturnValues(ReturnValue.ALL_NEW);
+            return Observable.<UpdateItemResult>create(subscriber -> amazonDynamoDB.updateItemAsync(request, handler(subscriber))).
+                    map(result -> ImageMetadataMarshaller.unmarshall(result.getAttributes()));
+        });
     }
 
     @Override
-    public void delete(ImageMetadata imageMetadata) {
-        dynamoDBMapper.delete(imageMetadata, new DynamoDBMapperConfig(new DynamoDBMapperConfig.TableNameOverride(tableName)));
+    public Observable<ImageMetadata> replaceFormat(String id, String format, String expectedStorageKey, String storageKey) {
+        return Observable.defer(() -> {
+            UpdateItemRequest request = new UpdateItemRequest().
+                    withTableName(tableName).
+                    withKey(ImageMetadataMarshaller.key(id)).
+                    withUpdateExpression("SET #mapping.#format = :storageKey, #updatedAt = :updatedAt").
+                    withConditionExpression("#mapping.#format = :expectedStorageKey").
+                    withExpressionAttributeNames(ImmutableMap.of(
+                            "#mapping", ImageMetadataMarshaller.FORMATS_MAPPING,
+                            "#format", format,
+                            "#updatedAt", ImageMetadataMarshaller.UPDATED_AT)).
+                    withExpressionAttributeValues(ImmutableMap.of(
+                            ":storageKey", new AttributeValue(storageKey),
+                            ":expectedStorageKey", new AttributeValue(expectedStorageKey),
+                            ":updatedAt", new AttributeValue(DateUtils.formatISO8601Date(
+                                    Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)))))).
+                    withReturnValues(ReturnValue.ALL_NEW);
+            return Observable.<UpdateItemResult>create(subscriber -> amazonDynamoDB.updateItemAsync(request, handler(subscriber))).
+                    map(result -> ImageMetadataMarshaller.unmarshall(result.getAttributes())).
+                    onErrorResumeNext(e -> e instanceof ConditionalCheckFailedException ?
+                            Observable.<ImageMetadata>empty() : Observable.<ImageMetadata>error(e));
+        });
+    }
+
+    @Override
+    public Observable<ImageMetadata> read(String id) {
+        GetItemRequest request = new GetItemRequest(tableName, ImageMetadataMarshaller.key(id));
+        return Observable.<GetItemResult>create(subscriber -> amazonDynamoDB.getItemAsync(request, handler(subscriber))).
+                filter(result -> result.getItem() != null).
+                map(result -> ImageMetadataMarshaller.unmarshall(result.getItem()));
+    }
+
+    @Override
+    public Observable<Map<String, ImageMetadata>> readAll(Collection<String> ids) {
+        return Observable.from(Lists.partition(Lists.newArrayList(ids), BATCH_LOAD_SIZE)).
+                flatMap(batch -> batchGet(Collections.singletonMap(tableName, new KeysAndAttributes().withKeys(
+                        batch.stream().map(ImageMetadataMarshaller::key).collect(Collectors.toList()))), 1)).
+                map(ImageMetadataMarshaller::unmarshall).
+                toMap(ImageMetadata::getId);
+    }
+
+    @Override
+    public Observable<ImageMetadata> findByContentHash(String contentHash) {
+        QueryRequest request = new QueryRequest(tableName).
+                withIndexName(contentHashIndex).
+                withKeyConditionExpression("#contentHash = :contentHash").
+                withExpressionAttributeNames(Collections.singletonMap("#contentHash", ImageMetadataMarshaller.CONTENT_HASH)).
+                withExpressionAttributeValues(Collections.singletonMap(":contentHash", new AttributeValue(contentHash))).
+                withLimit(1);
+        return Observable.<QueryResult>create(subscriber -> amazonDynamoDB.queryAsync(request, handler(subscriber))).
+                flatMap(result -> Observable.from(result.getItems())).
+                take(1).
+                flatMap(item -> read(item.get(ImageMetadataMarshaller.ID).getS()));
+    }
+
+    @Override
+    public Observable<Void> delete(ImageMetadata imageMetadata) {
+        DeleteItemRequest request = new DeleteItemRequest(tableName, ImageMetadataMarshaller.key(imageMetadata.getId()));
+        return Observable.<DeleteItemResult>create(subscriber -> amazonDynamoDB.deleteItemAsync(request, handler(subscriber))).
+                map(ignored -> null);
+    }
+
+    @Override
+    public Iterable<String> readIds() {
+        DynamoDBMapperConfig config = new DynamoDBMapperConfig(
+                new DynamoDBMapperConfig(new DynamoDBMapperConfig.TableNameOverride(tableName)),
+                new DynamoDBMapperConfig(DynamoDBMapperConfig.PaginationLoadingStrategy.ITERATION_ONLY));
+        return Iterables.transform(dynamoDBMapper.scan(ImageMetadata.class,
+                new DynamoDBScanExpression().withProjectionExpression("id"), config), ImageMetadata::getId);
+    }
+
+    @Override
+    public Observable<List<String>> readIds(String exclusiveStartId, int limit) {
+        ScanRequest request = new ScanRequest(tableName).
+                withProjectionExpression("#id").
+                withExpressionAttributeNames(Collections.singletonMap("#id", ImageMetadataMarshaller.ID)).
+                withLimit(limit).
+                withExclusiveStartKey(exclusiveStartId == null ? null : ImageMetadataMarshaller.key(exclusiveStartId));
+        return Observable.<ScanResult>create(subscriber -> amazonDynamoDB.scanAsync(request, handler(subscriber))).
+                map(result -> result.getItems().stream().
+                        map(item -> item.get(ImageMetadataMarshaller.ID).getS()).
+                        collect(Collectors.toList()));
+    }
+
+    private void prepareForCreate(ImageMetadata imageMetadata) {
+        if (imageMetadata.getId() == null) {
+            imageMetadata.setId(UUID.randomUUID().toString());
+        }
+        imageMetadata.setCreatedAt(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
+        imageMetadata.setUpdatedAt(Date.from(LocalDateTime.now().toInstant(ZoneOffset.UTC)));
+    }
+
+    private Observable<Map<String, AttributeValue>> batchGet(Map<String, KeysAndAttributes> requestItems, int attempt) {
+        BatchGetItemRequest request = new BatchGetItemRequest(requestItems);
+        return Observable.<BatchGetItemResult>create(subscriber -> amazonDynamoDB.batchGetItemAsync(request, handler(subscriber))).
+                flatMap(result -> {
+                    Observable<Map<String, AttributeValue>> items =
+                            Observable.from(result.getResponses().getOrDefault(tableName, Collections.emptyList()));
+                    Map<String, KeysAndAttributes> unprocessedKeys = result.getUnprocessedKeys();
+                    if (unprocessedKeys == null || unprocessedKeys.isEmpty()) {
+                        return items;
+                    }
+                    if (attempt == BATCH_ATTEMPTS) {
+                        return Observable.<Map<String, AttributeValue>>error(new IllegalStateException(
+                                String.format("Unable to load [%d] catalog keys after %d attempts",
+                                        unprocessedKeys.get(tableName).getKeys().size(), attempt)));
+                    }
+                    return items.concatWith(Observable.timer(BATCH_BACKOFF_MILLIS << attempt, TimeUnit.MILLISECONDS).
+                            flatMap(ignored -> batchGet(unprocessedKeys, attempt + 1)));
+                });
+    }
+
+    private Observable<BatchWriteItemResult> batchWrite(Map<String, List<WriteRequest>> requestItems, int attempt) {
+        BatchWriteItemRequest request = new BatchWriteItemRequest(requestItems);
+        return Observable.<BatchWriteItemResult>create(subscriber -> amazonDynamoDB.batchWriteItemAsync(request, handler(subscriber))).
+                flatMap(result -> {
+                    Map<String, List<WriteRequest>> unprocessedItems = result.getUnprocessedItems();
+                    if (unprocessedItems == null || unprocessedItems.isEmpty()) {
+                        return Observable.just(result);
+                    }
+                    if (attempt == BATCH_ATTEMPTS) {
+                        return Observable.<BatchWriteItemResult>error(new IllegalStateException(
+                                String.format("Unable to write [%d] catalog items after %d attempts",
+                                        unprocessedItems.get(tableName).size(), attempt)));
+                    }
+                    return Observable.timer(BATCH_BACKOFF_MILLIS << attempt, TimeUnit.MILLISECONDS).
+                            flatMap(ignored -> batchWrite(unprocessedItems, attempt + 1));
+                });
+    }
+
+    private static <REQUEST extends AmazonWebServiceRequest, RESULT> AsyncHandler<REQUEST, RESULT> handler(
+            Subscriber<? super RESULT> subscriber) {
+        return new AsyncHandler<REQUEST, RESULT>() {
+            @Override
+            public void onError(Exception exception) {
+                subscriber.onError(exception);
+            }
+
+            @Override
+            public void onSuccess(REQUEST request, RESULT result) {
+                subscriber.onNext(result);
+                subscriber.onCompleted();
+            }
+        };
     }
 }
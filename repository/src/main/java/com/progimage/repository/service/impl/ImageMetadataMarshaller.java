@@ -0,0 +1,101 @@
+package com.progimage.repository.service.impl;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.util.DateUtils;
+import com.google.common.collect.Maps;
+import com.progimage.repository.model.ImageMetadata;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+class ImageMetadataMarshaller {
+
+    static final String ID = "id";
+    static final String NAME = "name";
+    static final String ORIGINAL_FORMAT = "originalFormat";
+    static final String FORMATS_MAPPING = "formatsMapping";
+    static final String DETECTED_FORMAT = "detectedFormat";
+    static final String WIDTH = "width";
+    static final String HEIGHT = "height";
+    static final String SIZE = "size";
+    static final String CONTENT_HASH = "contentHash";
+    static final String CREATED_AT = "createdAt";
+    static final String UPDATED_AT = "updatedAt";
+
+    static Map<String, AttributeValue> key(String id) {
+        return Maps.newHashMap(Collections.singletonMap(ID, new AttributeValue(id)));
+    }
+
+    static Map<String, AttributeValue> marshall(ImageMetadata imageMetadata) {
+        Map<String, AttributeValue> item = Maps.newHashMap();
+        putString(item, ID, imageMetadata.getId());
+        putString(item, NAME, imageMetadata.getName());
+        putString(item, ORIGINAL_FORMAT, imageMetadata.getOriginalFormat());
+        putString(item, DETECTED_FORMAT, imageMetadata.getDetectedFormat());
+        putNumber(item, WIDTH, imageMetadata.getWidth());
+        putNumber(item, HEIGHT, imageMetadata.getHeight());
+        putNumber(item, SIZE, imageMetadata.getSize());
+        putString(item, CONTENT_HASH, imageMetadata.getContentHash());
+        putDate(item, CREATED_AT, imageMetadata.getCreatedAt());
+        putDate(item, UPDATED_AT, imageMetadata.getUpdatedAt());
+        if (imageMetadata.getFormatsMapping() != null && !imageMetadata.getFormatsMapping().isEmpty()) {
+            item.put(FORMATS_MAPPING, new AttributeValue().withM(
+                    Maps.transformValues(imageMetadata.getFormatsMapping(), AttributeValue::new)));
+        }
+        return item;
+    }
+
+    static ImageMetadata unmarshall(Map<String, AttributeValue> item) {
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(getString(item, ID));
+        imageMetadata.setName(getString(item, NAME));
+        imageMetadata.setDetectedFormat(getString(item, DETECTED_FORMAT));
+        imageMetadata.setWidth(getInteger(item, WIDTH));
+        imageMetadata.setHeight(getInteger(item, HEIGHT));
+        imageMetadata.setSize(getLong(item, SIZE));
+        imageMetadata.setContentHash(getString(item, CONTENT_HASH));
+        imageMetadata.setCreatedAt(getDate(item, CREATED_AT));
+        imageMetadata.setUpdatedAt(getDate(item, UPDATED_AT));
+        if (item.containsKey(FORMATS_MAPPING)) {
+            imageMetadata.setFormatsMapping(Maps.newHashMap(
+                    Maps.transformValues(item.get(FORMATS_MAPPING).getM(), AttributeValue::getS)));
+        }
+        imageMetadata.setOriginalFormat(getString(item, ORIGINAL_FORMAT));
+        return imageMetadata;
+    }
+
+    private static void putString(Map<String, AttributeValue> item, String name, String value) {
+        if (value != null && !value.isEmpty()) {
+            item.put(name, new AttributeValue(value));
+        }
+    }
+
+    private static void putNumber(Map<String, AttributeValue> item, String name, Number value) {
+        if (value != null) {
+            item.put(name, new AttributeValue().withN(value.toString()));
+        }
+    }
+
+    private static void putDate(Map<String, AttributeValue> item, String name, Date value) {
+        if (value != null) {
+            item.put(name, new AttributeValue(DateUtils.formatISO8601Date(value)));
+        }
+    }
+
+    private static String getString(Map<String, AttributeValue> item, String name) {
+        return item.containsKey(name) ? item.get(name).getS() : null;
+    }
+
+    private static Integer getInteger(Map<String, AttributeValue> item, String name) {
+        return item.containsKey(name) ? Integer.valueOf(item.get(name).getN()) : null;
+    }
+
+    private static Long getLong(Map<String, AttributeValue> item, String name) {
+        return item.containsKey(name) ? Long.valueOf(item.get(name).getN()) : null;
+    }
+
+    private static Date getDate(Map<String, AttributeValue> item, String name) {
+        return item.containsKey(name) ? DateUtils.parseISO8601Date(item.get(name).getS()) : null;
+    }
+}
@@ -0,0 +1,230 @@
+package com.progimage.repository.service.impl;
+
+import com.progimage.exception.NotFoundException;
+import com.progimage.repository.service.StorageService;
+import com.progimage.repository.service.WorkQueue;
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.regex.Pattern;
+
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class LocalFileStorageService implements StorageService {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[\\w~-]+");
+
+    @Value("${storage.local.root}")
+    private String root;
+
+    @Value("${storage.local.url}")
+    private String baseUrl;
+
+    @Value("${storage.local.url-max-age}")
+    private long urlMaxAge;
+
+    @Autowired
+    @Qualifier("storageWorkQueue")
+    private WorkQueue storageWorkQueue;
+
+    private Path rootPath;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(LocalFileStorageService.class);
+
+    @PostConstruct
+    public void init() throws IOException {
+        rootPath = Files.createDirectories(Paths.get(root));
+    }
+
+    @Override
+    public Observable<String> store(String key, String format, InputStream data, long length) {
+        return Observable.just(null).
+                subscribeOn(storageWorkQueue.scheduler()).
+                map(ignored -> {
+                    writeToDisk(key, format, data);
+                    return key;
+                });
+    }
+
+    @Override
+    public Observable<InputStream> retrieve(String key) {
+        return Observable.just(key).
+                subscribeOn(storageWorkQueue.scheduler()).
+                map(ignored -> {
+                    try {
+                        return mapFromDisk(resolvePath(key));
+                    } catch (NotFoundException | IOException e) {
+                        throw Throwables.propagate(e);
+                    }
+                });
+    }
+
+    @Override
+    public URL resolveURL(String key) {
+        try {
+            return new URL(baseUrl + "/progimage/repository/storage/" + fileKey(key));
+        } catch (MalformedURLException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public long resolveURLMaxAge() {
+        return urlMaxAge;
+    }
+
+    @Override
+    public Observable<Boolean> exists(String key) {
+        return Observable.just(key).
+                subscribeOn(storageWorkQueue.scheduler()).
+                map(ignored -> {
+                    try {
+                        resolvePath(key);
+                        return true;
+                    } catch (NotFoundException e) {
+                        return false;
+                    }
+                });
+    }
+
+    @Override
+    public Observable<String> copy(String sourceKey, String targetKey) {
+        return Observable.just(targetKey).
+                subscribeOn(storageWorkQueue.scheduler()).
+                map(ignored -> {
+                    try {
+                        Path source = resolvePath(sourceKey);
+                        writeToDisk(targetKey, resolveFormat(source), Files.newInputStream(source));
+                        return targetKey;
+                    } catch (NotFoundException | IOException e) {
+                        throw Throwables.propagate(e);
+                    }
+                });
+    }
+
+    public Path resolvePath(String key) throws NotFoundException {
+        key = fileKey(key);
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new NotFoundException(String.format("Object [%s] is not found", key));
+        }
+        try (DirectoryStream<Path> candidates = Files.newDirectoryStream(shardDirectory(key), key + ".*")) {
+            Iterator<Path> iterator = candidates.iterator();
+            if (iterator.hasNext()) {
+                return iterator.next();
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        throw new NotFoundException(String.format("Object [%s] is not found", key));
+    }
+
+    public String resolveFormat(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.substring(fileName.lastIndexOf('.') + 1);
+    }
+
+    private Path shardDirectory(String key) {
+        return rootPath.resolve(key.substring(0, Math.min(2, key.length()))).
+                resolve(key.substring(Math.min(2, key.length()), Math.min(4, key.length())));
+    }
+
+    private String fileKey(String key) {
+        return key.replace('/', '~');
+    }
+
+    private void writeToDisk(String key, String format, InputStream data) {
+        key = fileKey(key);
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException(String.format("Invalid storage key [%s]", key));
+        }
+        Path temporary = null;
+        try (InputStream in = data) {
+            Path directory = Files.createDirectories(shardDirectory(key));
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, directory.resolve(key + '.' + format), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exc) {
+            LOGGER.error("Unable to store file on local disk", exc);
+            deleteQuietly(temporary);
+            throw Throwables.propagate(exc);
+        }
+    }
+
+    private InputStream mapFromDisk(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete temporary file [{}]", path);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -2,32 +2,65 @@ package com.progimage.repository.service.impl;
 
 import com.amazonaws.HttpMethod;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.model.UploadResult;
 import com.progimage.repository.service.StorageService;
+import com.progimage.repository.service.WorkQueue;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import rx.Observable;
-import rx.schedulers.Schedulers;
 
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3", matchIfMissing = true)
 public class S3StorageService implements StorageService {
 
     @Value("${aws.s3.bucket}")
     private String bucketName;
 
+    @Value("${aws.s3.upload.part-size:5242880}")
+    private int uploadPartSize;
+
+    @Value("${aws.s3.url.bucket-seconds}")
+    private long urlBucketSeconds;
+
+    @Value("${aws.s3.url.cache-size}")
+    private long urlCacheSize;
+
+    @Autowired
+    @Qualifier("storageWorkQueue")
+    private WorkQueue storageWorkQueue;
+
     @Autowired
     private TransferManager transferManager;
 
@@ -36,25 +69,82 @@ public class S3StorageService implements StorageService {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(S3StorageService.class);
 
+    private Cache<String, URL> signedURLs;
+
+    @PostConstruct
+    public void init() {
+        signedURLs = CacheBuilder.newBuilder().
+                maximumSize(urlCacheSize).
+                expireAfterWrite(urlBucketSeconds, TimeUnit.SECONDS).
+                build();
+    }
+
     @Override
     public Observable<String> store(String key, String format, InputStream data, long length) {
         return Observable.just(null).
-                subscribeOn(Schedulers.io()).
-                map(ignored -> uploadToS3(key, format, data, length)).
-                map(result -> key);
+                subscribeOn(storageWorkQueue.scheduler()).
+                map(ignored -> {
+                    uploadToS3(key, format, data, length);
+                    return key;
+                });
     }
 
     @Override
     public Observable<InputStream> retrieve(String key) {
         return Observable.just(key).
-                subscribeOn(Schedulers.io()).
+                subscribeOn(storageWorkQueue.scheduler()).
                 map(ignored -> retrieveFromS3(key).getObjectContent());
     }
 
     @Override
     public URL resolveURL(String key) {
-        return amazonS3.generatePresignedUrl(bucketName, key,
-                Date.from(LocalDateTime.now().plusDays(1).toInstant(ZoneOffset.UTC)), HttpMethod.GET);
+        long timeBucket = currentTimeBucket();
+        try {
+            return signedURLs.get(timeBucket + ":" + key, () -> signURL(key, timeBucket));
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    @Override
+    public long resolveURLMaxAge() {
+        return (currentTimeBucket() + 1) * urlBucketSeconds - Instant.now().getEpochSecond();
+    }
+
+    @Override
+    public Observable<Boolean> exists(String key) {
+        return Observable.just(key).
+                subscribeOn(storageWorkQueue.scheduler()).
+                map(ignored -> {
+                    try {
+                        amazonS3.getObjectMetadata(bucketName, key);
+                        return true;
+                    } catch (AmazonS3Exception e) {
+                        if (e.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+                            return false;
+                        }
+                        throw e;
+                    }
+                });
+    }
+
+    @Override
+    public Observable<String> copy(String sourceKey, String targetKey) {
+        return Observable.just(targetKey).
+                subscribeOn(storageWorkQueue.scheduler()).
+                map(ignored -> {
+                    amazonS3.copyObject(bucketName, sourceKey, bucketName, targetKey);
+                    return targetKey;
+                });
+    }
+
+    private URL signURL(String key, long timeBucket) {
+        Instant expiration = Instant.ofEpochSecond((timeBucket + 1) * urlBucketSeconds).plus(1, ChronoUnit.DAYS);
+        return amazonS3.generatePresignedUrl(bucketName, key, Date.from(expiration), HttpMethod.GET);
+    }
+
+    private long currentTimeBucket() {
+        return Instant.now().getEpochSecond() / urlBucketSeconds;
     }
 
     private S3Object retrieveFromS3(String id) {
@@ -62,17 +152,55 @@ public class S3StorageService implements StorageService {
                 getObject(bucketName, id);
     }
 
-    private UploadResult uploadToS3(String key, String format, InputStream data, long length) {
-        try {
+    private void uploadToS3(String key, String format, InputStream data, long length) {
+        try (InputStream in = data) {
             ObjectMetadata objectMetadata = new ObjectMetadata();
             objectMetadata.setContentType("image/" + format);
-            objectMetadata.setContentLength(length);
             objectMetadata.setContentDisposition(String.format("inline; filename=\"%s.%s\"", key, format));
-            return transferManager.upload(bucketName, key, data, objectMetadata).
-                    waitForUploadResult();
+            if (length < 0) {
+                streamToS3(key, in, objectMetadata);
+            } else {
+                objectMetadata.setContentLength(length);
+                transferManager.upload(bucketName, key, in, objectMetadata).
+                        waitForUploadResult();
+            }
         } catch (Exception exc) {
             LOGGER.error("Unable to upload file to S3", exc);
             throw Throwables.propagate(exc);
         }
     }
+
+    private void streamToS3(String key, InputStream data, ObjectMetadata objectMetadata) throws IOException {
+        ByteArrayOutputStream firstPart = new ByteArrayOutputStream();
+        ByteStreams.copy(ByteStreams.limit(data, uploadPartSize), firstPart);
+        if (firstPart.size() < uploadPartSize) {
+            objectMetadata.setContentLength(firstPart.size());
+            amazonS3.putObject(bucketName, key, new ByteArrayInputStream(firstPart.toByteArray()), objectMetadata);
+            return;
+        }
+
+        byte[] buffer = firstPart.toByteArray();
+        int read = buffer.length;
+
+        String uploadId = amazonS3.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, key, objectMetadata)).getUploadId();
+        try {
+            List<PartETag> partETags = Lists.newArrayList();
+            for (int partNumber = 1; read > 0; partNumber++) {
+                partETags.add(amazonS3.uploadPart(new UploadPartRequest().
+                        withBucketName(bucketName).
+                        withKey(key).
+                        withUploadId(uploadId).
+                        withPartNumber(partNumber).
+                        withInputStream(new ByteArrayInputStream(buffer, 0, read)).
+                        withPartSize(read)).getPartETag());
+                read = ByteStreams.read(data, buffer, 0, buffer.length);
+            }
+            amazonS3.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+        } catch (IOException | RuntimeException exc) {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+            throw exc;
+        }
+    }
 }
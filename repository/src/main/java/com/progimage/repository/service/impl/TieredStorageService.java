@@ -0,0 +1,359 @@
+package com.progimage.repository.service.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.progimage.repository.service.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+
+import javax.annotation.PostConstruct;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@Primary
+@ConditionalOnExpression("${storage.tier.enabled:false} and '${storage.type:s3}' == 's3'")
+public class TieredStorageService implements StorageService, PublicMetrics {
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    @Autowired
+    private S3StorageService delegate;
+
+    @Value("${storage.tier.root}")
+    private String root;
+
+    @Value("${storage.tier.max-size}")
+    private long maxSize;
+
+    private Path rootPath;
+
+    private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(TieredStorageService.class);
+
+    @PostConstruct
+    public void init() throws IOException {
+        rootPath = Files.createDirectories(Paths.get(root));
+        try (Stream<Path> files = Files.list(rootPath)) {
+            List<Path> existing = files.sorted(Comparator.comparing(this::lastModified)).collect(Collectors.toList());
+            for (Path path : existing) {
+                if (path.getFileName().toString().endsWith(TEMPORARY_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else {
+                    admit(path.getFileName().toString(), Files.size(path)).forEach(this::deleteQuietly);
+                }
+            }
+        }
+        LOGGER.info("Local storage tier initialized with [{}] objects, [{}] bytes", entries.size(), size);
+    }
+
+    @Override
+    public Observable<String> store(String key, String format, InputStream data, long length) {
+        if (length > maxSize) {
+            return delegate.store(key, format, data, length);
+        }
+        return Observable.defer(() -> {
+            CachingInputStream caching = new CachingInputStream(key, data, length, false);
+            return delegate.store(key, format, caching, length).
+                    doOnNext(stored -> caching.commit()).
+                    doOnError(e -> caching.discard());
+        });
+    }
+
+    @Override
+    public Observable<InputStream> retrieve(String key) {
+        return Observable.defer(() -> {
+            InputStream cached = openCached(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return Observable.just(cached);
+            }
+            misses.incrementAndGet();
+            return delegate.retrieve(key).
+                    map(data -> new CachingInputStream(key, data, -1, true));
+        });
+    }
+
+    @Override
+    public URL resolveURL(String key) {
+        return delegate.resolveURL(key);
+    }
+
+    @Override
+    public long resolveURLMaxAge() {
+        return delegate.resolveURLMaxAge();
+    }
+
+    @Override
+    public Observable<Boolean> exists(String key) {
+        return delegate.exists(key);
+    }
+
+    @Override
+    public Observable<String> copy(String sourceKey, String targetKey) {
+        return delegate.copy(sourceKey, targetKey);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long hitCount = hits.get();
+        long requestCount = hitCount + misses.get();
+        synchronized (entries) {
+            return ImmutableList.of(
+                    new Metric<>("storage.tier.objects", entries.size()),
+                    new Metric<>("storage.tier.bytes", size),
+                    new Metric<>("storage.tier.hits", hitCount),
+                    new Metric<>("storage.tier.misses", misses.get()),
+                    new Metric<>("storage.tier.hit-ratio", requestCount == 0 ? 1.0 : (double) hitCount / requestCount),
+                    new Metric<>("storage.tier.evictions", evictions.get()));
+        }
+    }
+
+    private InputStream openCached(String key) {
+        String fileName = fileName(key);
+        synchronized (entries) {
+            if (entries.get(fileName) == null) {
+                return null;
+            }
+            try {
+                return Files.newInputStream(rootPath.resolve(fileName));
+            } catch (IOException e) {
+                LOGGER.warn("Unable to open cached object [{}], dropping it", key);
+                size -= entries.remove(fileName);
+                return null;
+            }
+        }
+    }
+
+    private void promote(String key, Path temporary) {
+        String fileName = fileName(key);
+        List<Path> evicted;
+        try {
+            long length = Files.size(temporary);
+            Files.move(temporary, rootPath.resolve(fileName),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (entries) {
+                Long previous = entries.remove(fileName);
+                if (previous != null) {
+                    size -= previous;
+                }
+                evicted = admit(fileName, length);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to cache object [{}] on local disk", key, e);
+            deleteQuietly(temporary);
+            return;
+        }
+        evicted.forEach(this::deleteQuietly);
+    }
+
+    private List<Path> admit(String fileName, long length) {
+        List<Path> evicted = Lists.newArrayList();
+        synchronized (entries) {
+            if (length > maxSize) {
+                evicted.add(rootPath.resolve(fileName));
+                return evicted;
+            }
+            entries.put(fileName, length);
+            size += length;
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (size > maxSize && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(fileName)) {
+                    continue;
+                }
+                eldest.remove();
+                size -= entry.getValue();
+                evictions.incrementAndGet();
+                evicted.add(rootPath.resolve(entry.getKey()));
+            }
+        }
+        return evicted;
+    }
+
+    private String fileName(String key) {
+        return key.replace('/', '~');
+    }
+
+    private long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to delete cached file [{}]", path);
+        }
+    }
+
+    private class CachingInputStream extends FilterInputStream {
+
+        private final String key;
+
+        private final long length;
+
+        private final boolean commitOnClose;
+
+        private Path temporary;
+
+        private OutputStream cache;
+
+        private long written;
+
+        private boolean eof;
+
+        private boolean closed;
+
+        CachingInputStream(String key, InputStream in, long length, boolean commitOnClose) {
+            super(in);
+            this.key = key;
+            this.length = length;
+            this.commitOnClose = commitOnClose;
+            try {
+                temporary = Files.createTempFile(rootPath, fileName(key), TEMPORARY_SUFFIX);
+                cache = Files.newOutputStream(temporary);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to cache object [{}] on local disk", key, e);
+                discard();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read == -1) {
+                eof = true;
+            } else {
+                write(new byte[] {(byte) read}, 0, 1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                eof = true;
+            } else {
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            discard();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                closeCache();
+                if (commitOnClose) {
+                    commit();
+                }
+            }
+        }
+
+        synchronized void commit() {
+            closeCache();
+            if (temporary == null) {
+                return;
+            }
+            if (eof || length >= 0 && written == length) {
+                promote(key, temporary);
+            } else {
+                deleteQuietly(temporary);
+            }
+            temporary = null;
+        }
+
+        synchronized void discard() {
+            closeCache();
+            deleteQuietly(temporary);
+            temporary = null;
+        }
+
+        private void write(byte[] buffer, int offset, int count) {
+            if (cache == null || count == 0) {
+                return;
+            }
+            if (written + count > maxSize) {
+                discard();
+                return;
+            }
+            try {
+                cache.write(buffer, offset, count);
+                written += count;
+            } catch (IOException e) {
+                LOGGER.warn("Unable to cache object [{}] on local disk", key, e);
+                discard();
+            }
+        }
+
+        private void closeCache() {
+            if (cache == null) {
+                return;
+            }
+            try {
+                cache.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to cache object [{}] on local disk", key, e);
+                deleteQuietly(temporary);
+                temporary = null;
+            }
+            cache = null;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.progimage.repository.validators;
 
 import com.google.common.collect.Sets;
+import com.progimage.repository.model.ImageDescriptor;
+import com.progimage.repository.service.ImageInspector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
@@ -34,28 +37,42 @@ public @interface ValidImage {
     Class<? extends Payload>[] payload() default {};
 
     class SingleImageValidator implements ConstraintValidator<ValidImage, MultipartFile> {
+        @Autowired
+        private ImageInspector imageInspector;
+
         @Override
         public void initialize(ValidImage constraintAnnotation) {
         }
 
         @Override
         public boolean isValid(MultipartFile file, ConstraintValidatorContext context) {
-            return isValidImage(file, context);
+            return isValidImage(file, imageInspector, context);
         }
 
-        static boolean isValidImage(MultipartFile file, ConstraintValidatorContext context) {
+        static boolean isValidImage(MultipartFile file, ImageInspector imageInspector, ConstraintValidatorContext context) {
             String fileName = file.getOriginalFilename();
             String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
-            try {
-                if (SUPPORTED_FORMATS.contains(extension) && file.getBytes() != null && file.getBytes().length > 0) {
-                    ImageIO.read(file.getInputStream());
-                    return true;
+            if (SUPPORTED_FORMATS.contains(extension) && !file.isEmpty()) {
+                try {
+                    ImageDescriptor descriptor = imageInspector.describe(file);
+                    if (descriptor != null && imageInspector.isWithinLimits(descriptor)) {
+                        return true;
+                    }
+                    if (descriptor != null) {
+                        return violation(context, String.format("File [%s] with dimensions [%dx%d] exceeds maximum dimensions [%dx%d]",
+                                fileName, descriptor.getWidth(), descriptor.getHeight(),
+                                imageInspector.getMaxWidth(), imageInspector.getMaxHeight()));
+                    }
+                } catch (IOException e) {
+                    LOGGER.error(String.format("Unable to read supported format [%s]", extension), e);
                 }
-            } catch (IOException e) {
-                LOGGER.error(String.format("Unable to read supported format [%s]", extension), e);
             }
-            context.buildConstraintViolationWithTemplate(String.format("File [%s] is in unsupported image format [%s]",
-                    fileName, extension)).
+            return violation(context, String.format("File [%s] is in unsupported image format [%s]",
+                    fileName, extension));
+        }
+
+        private static boolean violation(ConstraintValidatorContext context, String message) {
+            context.buildConstraintViolationWithTemplate(message).
                     addConstraintViolation().
                     disableDefaultConstraintViolation();
             return false;
@@ -63,6 +80,9 @@ public @interface ValidImage {
     }
 
     class BulkImageValidator implements ConstraintValidator<ValidImage, MultipartFile[]> {
+        @Autowired
+        private ImageInspector imageInspector;
+
         @Override
         public void initialize(ValidImage constraintAnnotation) {
         }
@@ -70,7 +90,7 @@ public @interface ValidImage {
         @Override
         public boolean isValid(MultipartFile[] values, ConstraintValidatorContext context) {
             return Arrays.stream(values).
-                    parallel().allMatch(value -> isValidImage(value, context));
+                    allMatch(value -> isValidImage(value, imageInspector, context));
         }
     }
 }
@@ -2,8 +2,10 @@ package com.progimage.repository.resource;
 
 import com.amazonaws.util.IOUtils;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.progimage.repository.model.ImageMetadata;
 import com.progimage.repository.service.CatalogService;
+import com.progimage.repository.service.ImageIdFilter;
 import com.progimage.repository.service.StorageService;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import org.junit.Before;
@@ -15,17 +17,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import rx.Observable;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -34,8 +49,10 @@ import static org.mockito.BDDMockito.given;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.times;
 
 @RunWith(SpringRunner.class)
@@ -48,12 +65,18 @@ public class AccessResourceTest {
     @Rule
     public WireMockRule wireMockRule = new WireMockRule(8089);
 
+    @Autowired
+    private AccessResource accessResource;
+
     @MockBean
     private CatalogService catalogService;
 
     @MockBean
     private StorageService storageService;
 
+    @MockBean
+    private ImageIdFilter imageIdFilter;
+
     private final static String missingImageId = "a53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
     private final static String existingImageId = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
     private final static String existingJpgStorageId = "c53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
@@ -75,7 +98,8 @@ public class AccessResourceTest {
 
     @Before
     public void init() throws Exception {
-        given(catalogService.read(missingImageId)).willReturn(null);
+        given(imageIdFilter.mightContain(anyString())).willReturn(true);
+        given(catalogService.read(missingImageId)).willReturn(Observable.empty());
 
         ImageMetadata imageMetadata = new ImageMetadata();
         imageMetadata.setId(existingImageId);
@@ -85,7 +109,17 @@ public class AccessResourceTest {
         imageMetadata.setUpdatedAt(new Date());
         imageMetadata.getFormatsMapping().put("jpg", existingJpgStorageId);
         imageMetadata.getFormatsMapping().put("png", existingPngStorageId);
-        given(catalogService.read(existingImageId)).willReturn(imageMetadata);
+        given(catalogService.read(existingImageId)).willReturn(Observable.just(imageMetadata));
+        given(catalogService.readAll(anyCollectionOf(String.class))).willAnswer(invocation ->
+                Observable.just(((Collection<String>) invocation.getArguments()[0]).stream().
+                        filter(existingImageId::equals).
+                        collect(Collectors.toMap(id -> id, id -> imageMetadata))));
+        given(catalogService.addFormat(anyString(), anyString(), anyString())).willAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            ImageMetadata updated = new ImageMetadata(imageMetadata);
+            updated.getFormatsMapping().putIfAbsent((String) arguments[1], (String) arguments[2]);
+            return Observable.just(updated);
+        });
 
         given(storageService.retrieve(existingJpgStorageId)).
                 willReturn(Observable.just(new ByteArrayInputStream(existingJpgData)));
@@ -98,7 +132,7 @@ public class AccessResourceTest {
 
         given(storageService.store(
                 any(String.class), any(String.class), any(InputStream.class), anyLong())).
-                willReturn(Observable.just(null));
+                willAnswer(invocation -> Observable.just(invocation.getArguments()[0]));
 
         stubFor(post(urlEqualTo("/progimage/conversion?format=bmp"))
                 .willReturn(aResponse()
@@ -140,6 +174,84 @@ public class AccessResourceTest {
         Mockito.verify(storageService, times(1)).store(anyString(), anyString(), any(InputStream.class), anyLong());
     }
 
+    @Test
+    public void getExistingImageBmpFormatConcurrentlyConvertsOnce() throws Exception {
+        given(storageService.retrieve(existingJpgStorageId)).
+                willReturn(Observable.just((InputStream) new ByteArrayInputStream(existingJpgData)).
+                        delay(500, TimeUnit.MILLISECONDS));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<ResponseEntity<byte[]>>> responses = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            responses.add(executorService.submit(() -> restTemplate.getForEntity(
+                    "/progimage/repository/{id}.{ext}", byte[].class, existingImageId, "bmp")));
+        }
+        for (Future<ResponseEntity<byte[]>> response : responses) {
+            assertTrue(response.get().getStatusCode() == HttpStatus.FOUND);
+        }
+        executorService.shutdown();
+
+        Mockito.verify(storageService, times(1)).store(anyString(), anyString(), any(InputStream.class), anyLong());
+    }
+
+    @Test
+    public void convertedImageIsRedirectedOnceConversionCompletes() {
+        given(storageService.retrieve(existingJpgStorageId)).
+                willReturn(Observable.just((InputStream) new ByteArrayInputStream(existingJpgData)).
+                        delay(300, TimeUnit.MILLISECONDS));
+
+        ResponseEntity<byte[]> response =
+                restTemplate.getForEntity("/progimage/repository/{id}.{ext}", byte[].class, existingImageId, "bmp");
+
+        assertTrue(response.getStatusCode() == HttpStatus.FOUND);
+        assertEquals(s3RedirectDefaultUrl, response.getHeaders().getLocation().toString());
+        assertNotNull(response.getHeaders().getCacheControl());
+        Mockito.verify(storageService, times(1)).store(anyString(), eq("bmp"), any(InputStream.class), anyLong());
+    }
+
+    @Test
+    public void slowConversionTimesOutWithServiceUnavailable() {
+        given(storageService.retrieve(existingJpgStorageId)).
+                willReturn(Observable.just((InputStream) new ByteArrayInputStream(existingJpgData)).
+                        delay(1, TimeUnit.SECONDS));
+        long conversionTimeoutMillis = (long) ReflectionTestUtils.getField(accessResource, "conversionTimeoutMillis");
+        ReflectionTestUtils.setField(accessResource, "conversionTimeoutMillis", 200L);
+        try {
+            ResponseEntity<String> response =
+                    restTemplate.getForEntity("/progimage/repository/{id}.{ext}", String.class, existingImageId, "gif");
+
+            assertTrue(response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+        } finally {
+            ReflectionTestUtils.setField(accessResource, "conversionTimeoutMillis", conversionTimeoutMillis);
+        }
+    }
+
+    @Test
+    public void rejectedConversionReturnsServiceUnavailable() {
+        given(storageService.retrieve(existingJpgStorageId)).
+                willReturn(Observable.error(new RejectedExecutionException("Work queue [storage] is full")));
+
+        ResponseEntity<String> response =
+                restTemplate.getForEntity("/progimage/repository/{id}.{ext}", String.class, existingImageId, "wbmp");
+
+        assertTrue(response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void imageRejectedByFilterIsReadFromCatalog() {
+        given(imageIdFilter.mightContain(existingImageId)).willReturn(false);
+
+        ResponseEntity<byte[]> response =
+                restTemplate.getForEntity("/progimage/repository/{id}.{ext}", byte[].class, existingImageId, "png");
+        ResponseEntity<Map> bulkResponse =
+                restTemplate.postForEntity("/progimage/repository/urls", ImmutableList.of(existingImageId), Map.class);
+
+        assertTrue(response.getStatusCode() == HttpStatus.FOUND);
+        assertEquals(s3RedirectUrlPng, response.getHeaders().getLocation().toString());
+        assertTrue(bulkResponse.getStatusCode() == HttpStatus.OK);
+        assertEquals(s3RedirectUrlJpg, bulkResponse.getBody().get(existingImageId));
+    }
+
     @Test
     public void getExistingImageBulk() {
         ResponseEntity<Map> response =
@@ -149,4 +261,17 @@ public class AccessResourceTest {
         assertTrue(response.getBody().size() == 1);
         assertEquals(s3RedirectUrlJpg, response.getBody().get(existingImageId));
     }
+
+    @Test
+    public void getImagesBulkAsNdjsonStream() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(ImmutableList.of(MediaType.valueOf("application/x-ndjson")));
+        ResponseEntity<String> response = restTemplate.exchange("/progimage/repository/urls", HttpMethod.POST,
+                new HttpEntity<>(ImmutableList.of(missingImageId, existingImageId), headers), String.class);
+        assertTrue(response.getStatusCode() == HttpStatus.OK);
+        List<String> lines = Lists.newArrayList(response.getBody().split("\n"));
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains(missingImageId) && lines.get(0).contains("\"error\""));
+        assertTrue(lines.get(1).contains(existingImageId) && lines.get(1).contains(s3RedirectUrlJpg));
+    }
 }
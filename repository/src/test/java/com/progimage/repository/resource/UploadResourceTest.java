@@ -0,0 +1,129 @@
+package com.progimage.repository.resource;
+
+import com.progimage.repository.model.ImageMetadata;
+import com.progimage.repository.service.CatalogService;
+import com.progimage.repository.service.StorageService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.LinkedMultiValueMap;
+import rx.Observable;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "catalog.deduplication.enabled=true")
+public class UploadResourceTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockBean
+    private CatalogService catalogService;
+
+    @MockBean
+    private StorageService storageService;
+
+    private final static String duplicateImageId = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+    private final static String duplicateStorageKey = "c53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    @Before
+    public void init() {
+        given(catalogService.findByContentHash(anyString())).willReturn(Observable.empty());
+        given(storageService.store(any(String.class), any(String.class), any(InputStream.class), anyLong())).
+                willAnswer(invocation -> Observable.just(invocation.getArguments()[0]));
+        given(catalogService.create(any(ImageMetadata.class))).willAnswer(invocation ->
+                Observable.just(((ImageMetadata) invocation.getArguments()[0]).getId()));
+        given(catalogService.createAll(anyCollectionOf(ImageMetadata.class))).willAnswer(invocation ->
+                Observable.just(((Collection<ImageMetadata>) invocation.getArguments()[0]).stream().
+                        map(ImageMetadata::getId).
+                        collect(Collectors.toList())));
+    }
+
+    @Test
+    public void bulkUploadCatalogsInBatches() {
+        ResponseEntity<List> response = restTemplate.postForEntity(
+                "/progimage/repository/upload/bulk", files(30), List.class);
+
+        assertTrue(response.getStatusCode() == HttpStatus.CREATED);
+        assertEquals(30, response.getBody().size());
+
+        ArgumentCaptor<Collection> batches = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(catalogService, times(2)).createAll(batches.capture());
+        assertEquals(25, batches.getAllValues().get(0).size());
+        assertEquals(5, batches.getAllValues().get(1).size());
+        Mockito.verify(storageService, times(30)).store(any(String.class), any(String.class), any(InputStream.class), anyLong());
+    }
+
+    @Test
+    public void duplicateUploadSharesStorage() {
+        ImageMetadata duplicate = new ImageMetadata();
+        duplicate.setId(duplicateImageId);
+        duplicate.setOriginalFormat("jpeg");
+        duplicate.getFormatsMapping().put("jpeg", duplicateStorageKey);
+        duplicate.getFormatsMapping().put("png", duplicateImageId + "/png");
+        given(catalogService.findByContentHash(anyString())).willReturn(Observable.just(duplicate));
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/progimage/repository/upload", files(1), String.class);
+
+        assertTrue(response.getStatusCode() == HttpStatus.CREATED);
+        Mockito.verify(storageService, never()).store(any(String.class), any(String.class), any(InputStream.class), anyLong());
+        ArgumentCaptor<ImageMetadata> created = ArgumentCaptor.forClass(ImageMetadata.class);
+        Mockito.verify(catalogService).create(created.capture());
+        assertNotEquals(duplicateImageId, created.getValue().getId());
+        assertEquals("jpg", created.getValue().getOriginalFormat());
+        assertEquals(duplicateStorageKey, created.getValue().getFormatsMapping().get("jpg"));
+        assertEquals(duplicateImageId + "/png", created.getValue().getFormatsMapping().get("png"));
+    }
+
+    @Test
+    public void failedDuplicateLookupFallsBackToStore() {
+        given(catalogService.findByContentHash(anyString())).
+                willReturn(Observable.error(new IllegalStateException("Index is not available")));
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/progimage/repository/upload", files(1), String.class);
+
+        assertTrue(response.getStatusCode() == HttpStatus.CREATED);
+        Mockito.verify(storageService, times(1)).store(any(String.class), eq("jpg"), any(InputStream.class), anyLong());
+        Mockito.verify(catalogService, times(1)).create(any(ImageMetadata.class));
+    }
+
+    private HttpEntity<LinkedMultiValueMap<String, Object>> files(int count) {
+        LinkedMultiValueMap<String, Object> map = new LinkedMultiValueMap<>();
+        for (int i = 0; i < count; i++) {
+            map.add("file", new ClassPathResource("/image.jpg"));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new HttpEntity<>(map, headers);
+    }
+}
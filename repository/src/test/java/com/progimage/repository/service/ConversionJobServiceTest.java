@@ -0,0 +1,224 @@
+package com.progimage.repository.service;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedScanList;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.google.common.collect.ImmutableList;
+import com.progimage.repository.model.ConversionJob;
+import com.progimage.repository.model.ConversionJobChunk;
+import com.progimage.repository.model.ImageMetadata;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import rx.Observable;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class ConversionJobServiceTest {
+
+    private final static int pageSize = 2;
+
+    private CatalogService catalogService;
+
+    private ImageConversionService imageConversionService;
+
+    private DynamoDBMapper dynamoDBMapper;
+
+    private WorkQueue jobWorkQueue;
+
+    private ConversionJobService conversionJobService;
+
+    private Map<String, ConversionJobChunk> chunks;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        catalogService = Mockito.mock(CatalogService.class);
+        given(catalogService.read(anyString())).willAnswer(invocation -> Observable.just(image((String) invocation.getArguments()[0])));
+        imageConversionService = Mockito.mock(ImageConversionService.class);
+        given(imageConversionService.convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"))).
+                willAnswer(invocation -> Observable.just(((ImageMetadata) invocation.getArguments()[0]).getId() + "/png"));
+
+        chunks = new ConcurrentHashMap<>();
+        dynamoDBMapper = Mockito.mock(DynamoDBMapper.class);
+        given(dynamoDBMapper.batchWrite(anyList(), anyList(), any(DynamoDBMapperConfig.class))).willAnswer(invocation -> {
+            for (ConversionJobChunk chunk : (List<ConversionJobChunk>) invocation.getArguments()[0]) {
+                chunks.put(chunk.getId(), chunk);
+            }
+            return Collections.emptyList();
+        });
+        given(dynamoDBMapper.load(eq(ConversionJobChunk.class), anyString(), any(DynamoDBMapperConfig.class))).
+                willAnswer(invocation -> chunks.get((String) invocation.getArguments()[1]));
+
+        jobWorkQueue = new WorkQueue("job", 1, 1);
+
+        conversionJobService = new ConversionJobService();
+        ReflectionTestUtils.setField(conversionJobService, "catalogService", catalogService);
+        ReflectionTestUtils.setField(conversionJobService, "imageConversionService", imageConversionService);
+        ReflectionTestUtils.setField(conversionJobService, "dynamoDBMapper", dynamoDBMapper);
+        ReflectionTestUtils.setField(conversionJobService, "jobWorkQueue", jobWorkQueue);
+        ReflectionTestUtils.setField(conversionJobService, "tableName", "conversion_jobs_test");
+        ReflectionTestUtils.setField(conversionJobService, "concurrency", 1);
+        ReflectionTestUtils.setField(conversionJobService, "pageSize", pageSize);
+        ReflectionTestUtils.setField(conversionJobService, "leaseSeconds", 60L);
+        conversionJobService.init();
+    }
+
+    @Test
+    public void listJobIdsAreStoredInChunks() throws Exception {
+        ConversionJob job = new ConversionJob();
+        job.setFormat("png");
+        job.setIds(ImmutableList.of("a", "b", "c", "d", "e"));
+
+        conversionJobService.start(job);
+        awaitCompletion();
+
+        assertNull(job.getIds());
+        assertEquals(5, job.getTotal());
+        assertEquals(3, chunks.size());
+        assertTrue(chunks.values().stream().allMatch(chunk -> chunk.getIds().size() <= pageSize));
+        assertEquals(ConversionJob.COMPLETED, job.getStatus());
+        assertEquals(5, job.getConverted());
+        Mockito.verify(imageConversionService, times(5)).convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void resumeClaimsOnlyJobsWithExpiredLease() throws Exception {
+        ConversionJob leased = runningJob("leased", new Date(System.currentTimeMillis() + 60000));
+        ConversionJob expired = runningJob("expired", new Date(System.currentTimeMillis() - 60000));
+        ConversionJob contested = runningJob("contested", null);
+        PaginatedScanList<ConversionJob> runningJobs = Mockito.mock(PaginatedScanList.class);
+        given(runningJobs.iterator()).willReturn(ImmutableList.of(leased, expired, contested).iterator());
+        given(dynamoDBMapper.scan(eq(ConversionJob.class), any(DynamoDBScanExpression.class), any(DynamoDBMapperConfig.class))).
+                willReturn(runningJobs);
+        Mockito.doThrow(new ConditionalCheckFailedException("The conditional request failed")).
+                when(dynamoDBMapper).save(same(contested), any(DynamoDBMapperConfig.class));
+        given(catalogService.readIds(null, pageSize)).willReturn(Observable.just(ImmutableList.of("a")));
+        given(catalogService.readIds("a", pageSize)).willReturn(Observable.just(Collections.emptyList()));
+
+        conversionJobService.resume();
+        awaitCompletion();
+
+        assertEquals(ConversionJob.COMPLETED, expired.getStatus());
+        assertEquals(8, expired.getProcessed());
+        assertEquals(7, expired.getProcessedBeforeStart());
+        assertNotEquals("other", expired.getOwner());
+        assertEquals(ConversionJob.RUNNING, leased.getStatus());
+        assertEquals(ConversionJob.RUNNING, contested.getStatus());
+        Mockito.verify(catalogService, times(1)).read("a");
+    }
+
+    @Test
+    public void jobStopsWhenClaimedByAnotherInstance() throws Exception {
+        Mockito.doNothing().
+                doThrow(new ConditionalCheckFailedException("The conditional request failed")).
+                when(dynamoDBMapper).save(any(ConversionJob.class), any(DynamoDBMapperConfig.class));
+        given(catalogService.readIds(null, pageSize)).willReturn(Observable.just(ImmutableList.of("a", "b")));
+        given(catalogService.readIds("b", pageSize)).willReturn(Observable.just(ImmutableList.of("c")));
+        ConversionJob job = new ConversionJob();
+        job.setFormat("png");
+        job.setAll(true);
+
+        conversionJobService.start(job);
+        awaitCompletion();
+
+        assertEquals(ConversionJob.RUNNING, job.getStatus());
+        Mockito.verify(catalogService, never()).readIds("b", pageSize);
+        Mockito.verify(dynamoDBMapper, times(2)).save(any(ConversionJob.class), any(DynamoDBMapperConfig.class));
+    }
+
+    @Test
+    public void jobIsFailedWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(catalogService.readIds(null, pageSize)).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return Observable.just(Collections.emptyList());
+        });
+
+        conversionJobService.start(allJob());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        conversionJobService.start(allJob());
+        ConversionJob rejected = allJob();
+        try {
+            conversionJobService.start(rejected);
+            fail("Job should be rejected");
+        } catch (RejectedExecutionException expected) {
+        } finally {
+            release.countDown();
+        }
+        awaitCompletion();
+
+        assertEquals(ConversionJob.FAILED, rejected.getStatus());
+    }
+
+    @Test
+    public void throughputIsMeasuredFromRunStart() {
+        long now = System.currentTimeMillis();
+        ConversionJob job = new ConversionJob();
+        job.setCreatedAt(new Date(now - TimeUnit.HOURS.toMillis(1)));
+        job.setStartedAt(new Date(now - 10000));
+        job.setUpdatedAt(new Date(now));
+        job.setProcessedBeforeStart(100);
+        job.setProcessed(200);
+
+        assertEquals(10.0, job.getThroughput(), 0.001);
+    }
+
+    private ConversionJob allJob() {
+        ConversionJob job = new ConversionJob();
+        job.setFormat("png");
+        job.setAll(true);
+        return job;
+    }
+
+    private ConversionJob runningJob(String id, Date leaseExpiresAt) {
+        ConversionJob job = allJob();
+        job.setId(id);
+        job.setStatus(ConversionJob.RUNNING);
+        job.setOwner("other");
+        job.setLeaseExpiresAt(leaseExpiresAt);
+        job.setProcessed(7);
+        job.setCreatedAt(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        return job;
+    }
+
+    private ImageMetadata image(String id) {
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(id);
+        imageMetadata.setOriginalFormat("jpg");
+        imageMetadata.getFormatsMapping().put("jpg", id + "/original");
+        return imageMetadata;
+    }
+
+    private void awaitCompletion() throws InterruptedException {
+        jobWorkQueue.shutdown();
+        assertTrue(jobWorkQueue.executor().awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,93 @@
+package com.progimage.repository.service;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+
+public class ImageIdFilterTest {
+
+    private final static String existingImageId = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+    private final static String missingImageId = "a53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private final static String remoteImageId = "c53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private CatalogService catalogService;
+
+    private ImageIdFilter imageIdFilter;
+
+    @Before
+    public void init() throws Exception {
+        catalogService = Mockito.mock(CatalogService.class);
+        given(catalogService.readIds()).willReturn(ImmutableList.of(existingImageId));
+
+        imageIdFilter = new ImageIdFilter();
+        ReflectionTestUtils.setField(imageIdFilter, "catalogService", catalogService);
+        ReflectionTestUtils.setField(imageIdFilter, "enabled", true);
+        ReflectionTestUtils.setField(imageIdFilter, "expectedInsertions", 10L);
+        ReflectionTestUtils.setField(imageIdFilter, "falsePositiveRate", 0.001);
+        imageIdFilter.rebuild();
+    }
+
+    @Test
+    public void filterIsPermissiveUntilFirstRebuild() {
+        ImageIdFilter emptyFilter = new ImageIdFilter();
+
+        assertTrue(emptyFilter.mightContain(missingImageId));
+    }
+
+    @Test
+    public void knownIdsArePopulatedFromCatalog() {
+        assertTrue(imageIdFilter.mightContain(existingImageId));
+        assertFalse(imageIdFilter.mightContain(missingImageId));
+    }
+
+    @Test
+    public void rebuildPicksUpIdsCatalogedElsewhere() {
+        assertFalse(imageIdFilter.mightContain(remoteImageId));
+
+        given(catalogService.readIds()).willReturn(ImmutableList.of(existingImageId, remoteImageId));
+        imageIdFilter.rebuild();
+
+        assertTrue(imageIdFilter.mightContain(existingImageId));
+        assertTrue(imageIdFilter.mightContain(remoteImageId));
+    }
+
+    @Test
+    public void idsPutDuringRebuildAreKept() {
+        given(catalogService.readIds()).willAnswer(invocation -> {
+            imageIdFilter.put(remoteImageId);
+            return ImmutableList.of(existingImageId);
+        });
+        imageIdFilter.rebuild();
+
+        assertTrue(imageIdFilter.mightContain(remoteImageId));
+    }
+
+    @Test
+    public void failedRebuildKeepsCurrentFilter() {
+        given(catalogService.readIds()).willThrow(new IllegalStateException("Catalog unavailable"));
+        imageIdFilter.rebuild();
+
+        assertTrue(imageIdFilter.mightContain(existingImageId));
+        assertFalse(imageIdFilter.mightContain(missingImageId));
+    }
+
+    @Test
+    public void filterGrowsBeyondExpectedInsertions() {
+        ImmutableList.Builder<String> ids = ImmutableList.builder();
+        for (int i = 0; i < 100; i++) {
+            String id = UUID.randomUUID().toString();
+            imageIdFilter.put(id);
+            ids.add(id);
+        }
+        ids.build().forEach(id -> assertTrue(imageIdFilter.mightContain(id)));
+    }
+}
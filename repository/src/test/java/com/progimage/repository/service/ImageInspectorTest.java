@@ -0,0 +1,59 @@
+package com.progimage.repository.service;
+
+import com.amazonaws.util.IOUtils;
+import com.google.common.hash.Hashing;
+import com.progimage.repository.model.ImageDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ImageInspectorTest {
+
+    private ImageInspector imageInspector;
+
+    @Before
+    public void init() {
+        imageInspector = new ImageInspector();
+        ReflectionTestUtils.setField(imageInspector, "maxWidth", 16384);
+        ReflectionTestUtils.setField(imageInspector, "maxHeight", 16384);
+    }
+
+    @Test
+    public void inspectReadsFormatAndDimensions() throws Exception {
+        try (InputStream data = ImageInspectorTest.class.getResourceAsStream("/image.jpg")) {
+            ImageDescriptor descriptor = imageInspector.inspect(data);
+            assertEquals("jpeg", descriptor.getFormat());
+            assertTrue(descriptor.getWidth() > 0);
+            assertTrue(descriptor.getHeight() > 0);
+            assertTrue(imageInspector.isWithinLimits(descriptor));
+        }
+    }
+
+    @Test
+    public void inspectMeasuresSizeAndHashOfWholeContent() throws Exception {
+        byte[] content = IOUtils.toByteArray(ImageInspectorTest.class.getResourceAsStream("/image.jpg"));
+        ImageDescriptor descriptor = imageInspector.inspect(new ByteArrayInputStream(content));
+        assertEquals(content.length, descriptor.getSize());
+        assertEquals(Hashing.sha256().hashBytes(content).toString(), descriptor.getContentHash());
+    }
+
+    @Test
+    public void inspectRejectsNonImage() throws Exception {
+        assertNull(imageInspector.inspect(new ByteArrayInputStream("not an image".getBytes())));
+    }
+
+    @Test
+    public void dimensionsAboveLimitsAreRejected() {
+        ReflectionTestUtils.setField(imageInspector, "maxWidth", 100);
+        assertFalse(imageInspector.isWithinLimits(new ImageDescriptor("png", 101, 10, 0, null)));
+        assertTrue(imageInspector.isWithinLimits(new ImageDescriptor("png", 100, 10, 0, null)));
+    }
+}
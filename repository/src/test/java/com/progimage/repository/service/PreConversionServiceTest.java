@@ -0,0 +1,130 @@
+package com.progimage.repository.service;
+
+import com.progimage.repository.model.ImageMetadata;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.test.util.ReflectionTestUtils;
+import rx.Observable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class PreConversionServiceTest {
+
+    private final static String imageId = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private ImageConversionService imageConversionService;
+
+    private WorkQueue warmWorkQueue;
+
+    private PreConversionService preConversionService;
+
+    @Before
+    public void init() {
+        imageConversionService = Mockito.mock(ImageConversionService.class);
+        given(imageConversionService.convertImageToFormatAndStore(any(ImageMetadata.class), any(String.class))).
+                willReturn(Observable.just(imageId + "/png"));
+
+        warmWorkQueue = new WorkQueue("warm", 1, 1);
+
+        preConversionService = new PreConversionService();
+        ReflectionTestUtils.setField(preConversionService, "imageConversionService", imageConversionService);
+        ReflectionTestUtils.setField(preConversionService, "warmWorkQueue", warmWorkQueue);
+        ReflectionTestUtils.setField(preConversionService, "warmFormats", new String[] {"png", "jpg"});
+        ReflectionTestUtils.setField(preConversionService, "attempts", 3);
+        ReflectionTestUtils.setField(preConversionService, "backoffMillis", 1L);
+    }
+
+    @Test
+    public void missingFormatsAreConverted() throws Exception {
+        preConversionService.submit(image());
+        awaitCompletion();
+
+        Mockito.verify(imageConversionService, times(1)).convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"));
+        Mockito.verify(imageConversionService, never()).convertImageToFormatAndStore(any(ImageMetadata.class), eq("jpg"));
+        assertEquals(1L, metric("conversion.warm.converted"));
+        assertEquals(0L, metric("conversion.warm.failed"));
+    }
+
+    @Test
+    public void failedConversionIsRetried() throws Exception {
+        given(imageConversionService.convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"))).
+                willReturn(Observable.error(new IllegalStateException("Storage is not available"))).
+                willReturn(Observable.just(imageId + "/png"));
+
+        preConversionService.submit(image());
+        awaitCompletion();
+
+        Mockito.verify(imageConversionService, times(2)).convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"));
+        assertEquals(1L, metric("conversion.warm.converted"));
+        assertEquals(0L, metric("conversion.warm.failed"));
+    }
+
+    @Test
+    public void conversionFailsAfterLastAttempt() throws Exception {
+        given(imageConversionService.convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"))).
+                willReturn(Observable.error(new IllegalStateException("Storage is not available")));
+
+        preConversionService.submit(image());
+        awaitCompletion();
+
+        Mockito.verify(imageConversionService, times(3)).convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"));
+        assertEquals(0L, metric("conversion.warm.converted"));
+        assertEquals(1L, metric("conversion.warm.failed"));
+    }
+
+    @Test
+    public void conversionIsDroppedWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(imageConversionService.convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"))).
+                willAnswer(invocation -> {
+                    started.countDown();
+                    release.await();
+                    return Observable.just(imageId + "/png");
+                });
+
+        preConversionService.submit(image());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        preConversionService.submit(image());
+        preConversionService.submit(image());
+        release.countDown();
+        awaitCompletion();
+
+        Mockito.verify(imageConversionService, times(2)).convertImageToFormatAndStore(any(ImageMetadata.class), eq("png"));
+        assertEquals(2L, metric("conversion.warm.converted"));
+        assertEquals(1L, metric("executor.warm.rejected"));
+    }
+
+    private ImageMetadata image() {
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(imageId);
+        imageMetadata.setOriginalFormat("jpg");
+        imageMetadata.getFormatsMapping().put("jpg", imageId + "/original");
+        return imageMetadata;
+    }
+
+    private void awaitCompletion() throws InterruptedException {
+        warmWorkQueue.shutdown();
+        assertTrue(warmWorkQueue.executor().awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private Number metric(String name) {
+        return Stream.concat(preConversionService.metrics().stream(), warmWorkQueue.metrics().stream()).
+                filter(metric -> metric.getName().equals(name)).
+                map(Metric::getValue).
+                findFirst().
+                orElseThrow(() -> new IllegalArgumentException(name));
+    }
+}
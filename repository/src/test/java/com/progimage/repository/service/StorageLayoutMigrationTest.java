@@ -0,0 +1,102 @@
+package com.progimage.repository.service;
+
+import com.progimage.repository.model.ImageMetadata;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class StorageLayoutMigrationTest {
+
+    private final static String imageId = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+    private final static String legacyJpgStorageKey = "c53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private CatalogService catalogService;
+
+    private StorageService storageService;
+
+    private StorageLayout storageLayout;
+
+    private StorageLayoutMigration storageLayoutMigration;
+
+    @Before
+    public void init() {
+        catalogService = Mockito.mock(CatalogService.class);
+        storageService = Mockito.mock(StorageService.class);
+
+        storageLayout = new StorageLayout();
+        ReflectionTestUtils.setField(storageLayout, "storageService", storageService);
+        ReflectionTestUtils.setField(storageLayout, "layout", "deterministic");
+        ReflectionTestUtils.setField(storageLayout, "presenceCacheSize", 10L);
+        ReflectionTestUtils.setField(storageLayout, "absenceCacheSeconds", 60L);
+        storageLayout.init();
+
+        storageLayoutMigration = new StorageLayoutMigration();
+        ReflectionTestUtils.setField(storageLayoutMigration, "catalogService", catalogService);
+        ReflectionTestUtils.setField(storageLayoutMigration, "storageService", storageService);
+        ReflectionTestUtils.setField(storageLayoutMigration, "storageLayout", storageLayout);
+        ReflectionTestUtils.setField(storageLayoutMigration, "concurrency", 1);
+
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(imageId);
+        imageMetadata.setOriginalFormat("jpg");
+        imageMetadata.getFormatsMapping().put("jpg", legacyJpgStorageKey);
+        imageMetadata.getFormatsMapping().put("png", imageId + "/png");
+        given(catalogService.read(imageId)).willReturn(Observable.just(imageMetadata));
+        given(storageService.copy(legacyJpgStorageKey, imageId + "/original")).
+                willReturn(Observable.just(imageId + "/original"));
+    }
+
+    @Test
+    public void migrateReplacesOnlyUnmigratedMappings() {
+        given(catalogService.replaceFormat(imageId, "jpg", legacyJpgStorageKey, imageId + "/original")).
+                willReturn(Observable.just(new ImageMetadata()));
+
+        ImageMetadata migrated = storageLayoutMigration.migrate(imageId).toBlocking().single();
+
+        assertEquals(imageId + "/original", migrated.getFormatsMapping().get("jpg"));
+        Mockito.verify(storageService, times(1)).copy(anyString(), anyString());
+        Mockito.verify(catalogService, times(1)).
+                replaceFormat(imageId, "jpg", legacyJpgStorageKey, imageId + "/original");
+        Mockito.verify(catalogService, never()).update(any(ImageMetadata.class));
+    }
+
+    @Test
+    public void concurrentlyChangedMappingIsSkipped() {
+        given(catalogService.replaceFormat(imageId, "jpg", legacyJpgStorageKey, imageId + "/original")).
+                willReturn(Observable.empty());
+
+        ImageMetadata migrated = storageLayoutMigration.migrate(imageId).toBlocking().single();
+
+        assertEquals(legacyJpgStorageKey, migrated.getFormatsMapping().get("jpg"));
+        Mockito.verify(catalogService, never()).update(any(ImageMetadata.class));
+    }
+
+    @Test
+    public void migratedImageIsNotTouched() {
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(imageId);
+        imageMetadata.setOriginalFormat("jpg");
+        imageMetadata.getFormatsMapping().put("jpg", imageId + "/original");
+        given(catalogService.read(imageId)).willReturn(Observable.just(imageMetadata));
+
+        assertEquals(0, storageLayoutMigration.migrate(imageId).toList().toBlocking().single().size());
+        Mockito.verifyZeroInteractions(storageService);
+    }
+
+    @Test
+    public void startIsRejectedForRandomLayout() {
+        ReflectionTestUtils.setField(storageLayout, "layout", "random");
+
+        assertFalse(storageLayoutMigration.start());
+    }
+}
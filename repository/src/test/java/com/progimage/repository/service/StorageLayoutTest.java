@@ -0,0 +1,145 @@
+package com.progimage.repository.service;
+
+import com.progimage.repository.model.ImageMetadata;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+
+public class StorageLayoutTest {
+
+    private final static String imageId = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+    private final static String otherImageId = "c53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+    private final static String legacyStorageKey = "d53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private StorageService storageService;
+
+    private StorageLayout storageLayout;
+
+    @Before
+    public void init() {
+        storageService = Mockito.mock(StorageService.class);
+        storageLayout = layout("deterministic");
+    }
+
+    @Test
+    public void storageKeyUsesOriginalForMissingFormat() {
+        assertEquals(imageId + "/original", storageLayout.storageKey(imageId, null));
+        assertEquals(imageId + "/png", storageLayout.storageKey(imageId, "png"));
+    }
+
+    @Test
+    public void assignOriginalUsesDeterministicKey() {
+        ImageMetadata imageMetadata = image();
+        storageLayout.assignOriginal(imageMetadata);
+
+        assertEquals(imageId + "/original", imageMetadata.getFormatsMapping().get("jpg"));
+    }
+
+    @Test
+    public void resolveStorageKeyAssignsDeterministicKeyForNewFormat() {
+        ImageMetadata imageMetadata = image();
+        imageMetadata.getFormatsMapping().put("jpg", imageId + "/original");
+
+        assertEquals(imageId + "/png", storageLayout.resolveStorageKey(imageMetadata, "png"));
+    }
+
+    @Test
+    public void randomLayoutLeavesMappingUntouched() {
+        StorageLayout randomLayout = layout("random");
+        ImageMetadata imageMetadata = image();
+        randomLayout.assignOriginal(imageMetadata);
+
+        assertNull(imageMetadata.getFormatsMapping().get("jpg"));
+        assertNull(randomLayout.locate(imageId, "png").toBlocking().singleOrDefault(null));
+        Mockito.verifyZeroInteractions(storageService);
+    }
+
+    @Test
+    public void isMigratedChecksEveryMapping() {
+        ImageMetadata imageMetadata = image();
+        imageMetadata.getFormatsMapping().put("jpg", imageId + "/original");
+        imageMetadata.getFormatsMapping().put("png", legacyStorageKey);
+
+        assertTrue(storageLayout.isMigrated(imageMetadata, "jpg"));
+        assertFalse(storageLayout.isMigrated(imageMetadata, "png"));
+        assertFalse(storageLayout.isMigrated(imageMetadata));
+
+        imageMetadata.getFormatsMapping().put("png", imageId + "/png");
+        assertTrue(storageLayout.isMigrated(imageMetadata));
+    }
+
+    @Test
+    public void sharedDeduplicatedKeyCountsAsMigrated() {
+        ImageMetadata imageMetadata = image();
+        imageMetadata.getFormatsMapping().put("jpg", otherImageId + "/original");
+
+        assertTrue(storageLayout.isMigrated(imageMetadata, "jpg"));
+        assertEquals(imageId + "/original", storageLayout.expectedKey(imageMetadata, "jpg"));
+        assertEquals(imageId + "/png", storageLayout.expectedKey(imageMetadata, "png"));
+    }
+
+    @Test
+    public void locateCachesPresentKeys() {
+        given(storageService.exists(imageId + "/png")).willReturn(Observable.just(true));
+
+        assertEquals(imageId + "/png", storageLayout.locate(imageId, "png").toBlocking().single());
+        assertEquals(imageId + "/png", storageLayout.locate(imageId, "png").toBlocking().single());
+
+        Mockito.verify(storageService, times(1)).exists(imageId + "/png");
+    }
+
+    @Test
+    public void locateOfMissingKeyIsEmpty() {
+        given(storageService.exists(imageId + "/png")).willReturn(Observable.just(false));
+
+        assertNull(storageLayout.locate(imageId, "png").toBlocking().singleOrDefault(null));
+    }
+
+    @Test
+    public void locateCachesAbsentKeysUntilMarkedPresent() {
+        given(storageService.exists(imageId + "/png")).willReturn(Observable.just(false));
+
+        assertNull(storageLayout.locate(imageId, "png").toBlocking().singleOrDefault(null));
+        assertNull(storageLayout.locate(imageId, "png").toBlocking().singleOrDefault(null));
+        Mockito.verify(storageService, times(1)).exists(imageId + "/png");
+
+        storageLayout.markPresent(image(), "png", imageId + "/png");
+        assertEquals(imageId + "/png", storageLayout.locate(imageId, "png").toBlocking().single());
+        Mockito.verify(storageService, times(1)).exists(imageId + "/png");
+    }
+
+    @Test
+    public void originalExtensionIsLocatedAsOriginalKey() {
+        storageLayout.markPresent(image(), null, imageId + "/original");
+
+        assertEquals(imageId + "/original", storageLayout.locate(imageId, "jpg").toBlocking().single());
+        assertEquals(imageId + "/original", storageLayout.locate(imageId, null).toBlocking().single());
+        Mockito.verifyZeroInteractions(storageService);
+    }
+
+    private StorageLayout layout(String layout) {
+        StorageLayout storageLayout = new StorageLayout();
+        ReflectionTestUtils.setField(storageLayout, "storageService", storageService);
+        ReflectionTestUtils.setField(storageLayout, "layout", layout);
+        ReflectionTestUtils.setField(storageLayout, "presenceCacheSize", 10L);
+        ReflectionTestUtils.setField(storageLayout, "absenceCacheSeconds", 60L);
+        storageLayout.init();
+        return storageLayout;
+    }
+
+    private ImageMetadata image() {
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(imageId);
+        imageMetadata.setOriginalFormat("jpg");
+        return imageMetadata;
+    }
+}
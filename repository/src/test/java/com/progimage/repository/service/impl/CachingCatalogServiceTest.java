@@ -0,0 +1,93 @@
+package com.progimage.repository.service.impl;
+
+import com.progimage.repository.model.ImageMetadata;
+import com.progimage.repository.service.CatalogService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import rx.Observable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+
+public class CachingCatalogServiceTest {
+
+    private final static String existingImageId = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+    private final static String missingImageId = "a53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private CatalogService delegate;
+
+    private CachingCatalogService catalogService;
+
+    @Before
+    public void init() {
+        delegate = Mockito.mock(CatalogService.class);
+        catalogService = new CachingCatalogService();
+        ReflectionTestUtils.setField(catalogService, "delegate", delegate);
+        ReflectionTestUtils.setField(catalogService, "maximumSize", 10L);
+        ReflectionTestUtils.setField(catalogService, "ttlSeconds", 60L);
+        catalogService.init();
+
+        ImageMetadata imageMetadata = new ImageMetadata();
+        imageMetadata.setId(existingImageId);
+        imageMetadata.setOriginalFormat("jpg");
+        given(delegate.read(existingImageId)).willReturn(Observable.just(imageMetadata));
+        given(delegate.read(missingImageId)).willReturn(Observable.empty());
+        given(delegate.update(any(ImageMetadata.class))).willAnswer(invocation ->
+                Observable.just(invocation.getArguments()[0]));
+        given(delegate.delete(any(ImageMetadata.class))).willReturn(Observable.empty());
+    }
+
+    @Test
+    public void readIsServedFromCache() {
+        read(existingImageId);
+        read(existingImageId);
+
+        Mockito.verify(delegate, times(1)).read(existingImageId);
+        assertEquals(1, catalogService.stats().hitCount());
+        assertEquals(1, catalogService.stats().missCount());
+    }
+
+    @Test
+    public void missingImageIsNotCached() {
+        assertNull(read(missingImageId));
+        assertNull(read(missingImageId));
+
+        Mockito.verify(delegate, times(2)).read(missingImageId);
+    }
+
+    @Test
+    public void cachedEntryIsIsolatedFromCallers() {
+        read(existingImageId).resolveStorageKey("png");
+
+        assertFalse(read(existingImageId).supports("png"));
+    }
+
+    @Test
+    public void updateWritesThrough() {
+        ImageMetadata imageMetadata = read(existingImageId);
+        imageMetadata.resolveStorageKey("png");
+        catalogService.update(imageMetadata).toBlocking().single();
+
+        assertTrue(read(existingImageId).supports("png"));
+        Mockito.verify(delegate, times(1)).read(existingImageId);
+    }
+
+    @Test
+    public void deleteInvalidates() {
+        catalogService.delete(read(existingImageId)).toBlocking().singleOrDefault(null);
+        read(existingImageId);
+
+        Mockito.verify(delegate, times(2)).read(existingImageId);
+    }
+
+    private ImageMetadata read(String id) {
+        return catalogService.read(id).toBlocking().singleOrDefault(null);
+    }
+}
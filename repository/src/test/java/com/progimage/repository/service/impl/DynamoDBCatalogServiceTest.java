@@ -0,0 +1,137 @@
+package com.progimage.repository.service.impl;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.progimage.repository.model.ImageMetadata;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+
+public class DynamoDBCatalogServiceTest {
+
+    private final static String tableName = "image_metadata_test";
+
+    private AmazonDynamoDBAsync amazonDynamoDB;
+
+    private DynamoDBCatalogService catalogService;
+
+    private List<List<WriteRequest>> batchWrites;
+
+    @Before
+    public void init() {
+        amazonDynamoDB = Mockito.mock(AmazonDynamoDBAsync.class);
+        batchWrites = new CopyOnWriteArrayList<>();
+
+        catalogService = new DynamoDBCatalogService();
+        ReflectionTestUtils.setField(catalogService, "amazonDynamoDB", amazonDynamoDB);
+        ReflectionTestUtils.setField(catalogService, "tableName", tableName);
+    }
+
+    @Test
+    public void createAllWritesInBatchesOf25() {
+        answerBatchWrites(requests -> new BatchWriteItemResult().withUnprocessedItems(Collections.emptyMap()));
+
+        List<String> ids = catalogService.createAll(images(30)).toBlocking().single();
+
+        assertEquals(30, ids.size());
+        assertEquals(2, batchWrites.size());
+        assertEquals(25 + 5, batchWrites.get(0).size() + batchWrites.get(1).size());
+    }
+
+    @Test
+    public void createAllRetriesOnlyUnprocessedItems() {
+        answerBatchWrites(requests -> {
+            if (batchWrites.size() == 1) {
+                return new BatchWriteItemResult().withUnprocessedItems(
+                        Collections.singletonMap(tableName, new ArrayList<>(requests.subList(0, 2))));
+            }
+            return new BatchWriteItemResult().withUnprocessedItems(Collections.emptyMap());
+        });
+
+        List<String> ids = catalogService.createAll(images(10)).toBlocking().single();
+
+        assertEquals(10, ids.size());
+        assertEquals(2, batchWrites.size());
+        assertEquals(10, batchWrites.get(0).size());
+        assertEquals(batchWrites.get(0).subList(0, 2), batchWrites.get(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void replaceFormatIsConditionalOnPreviousKey() {
+        given(amazonDynamoDB.updateItemAsync(any(UpdateItemRequest.class), any(AsyncHandler.class))).willAnswer(invocation -> {
+            Map<String, AttributeValue> item = ImageMetadataMarshaller.key("id");
+            item.put(ImageMetadataMarshaller.FORMATS_MAPPING, new AttributeValue().withM(
+                    Collections.singletonMap("jpg", new AttributeValue("id/original"))));
+            ((AsyncHandler<UpdateItemRequest, UpdateItemResult>) invocation.getArguments()[1]).
+                    onSuccess((UpdateItemRequest) invocation.getArguments()[0], new UpdateItemResult().withAttributes(item));
+            return null;
+        });
+
+        ImageMetadata updated = catalogService.replaceFormat("id", "jpg", "legacy", "id/original").toBlocking().single();
+
+        assertEquals("id/original", updated.getFormatsMapping().get("jpg"));
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        Mockito.verify(amazonDynamoDB).updateItemAsync(request.capture(), any(AsyncHandler.class));
+        assertEquals("#mapping.#format = :expectedStorageKey", request.getValue().getConditionExpression());
+        assertEquals("legacy", request.getValue().getExpressionAttributeValues().get(":expectedStorageKey").getS());
+        assertEquals("id/original", request.getValue().getExpressionAttributeValues().get(":storageKey").getS());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void replaceFormatOfChangedMappingIsEmpty() {
+        given(amazonDynamoDB.updateItemAsync(any(UpdateItemRequest.class), any(AsyncHandler.class))).willAnswer(invocation -> {
+            ((AsyncHandler<UpdateItemRequest, UpdateItemResult>) invocation.getArguments()[1]).
+                    onError(new ConditionalCheckFailedException("The conditional request failed"));
+            return null;
+        });
+
+        assertNull(catalogService.replaceFormat("id", "jpg", "legacy", "id/original").toBlocking().singleOrDefault(null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void answerBatchWrites(Function<List<WriteRequest>, BatchWriteItemResult> results) {
+        given(amazonDynamoDB.batchWriteItemAsync(any(BatchWriteItemRequest.class), any(AsyncHandler.class))).
+                willAnswer(invocation -> {
+                    BatchWriteItemRequest request = (BatchWriteItemRequest) invocation.getArguments()[0];
+                    List<WriteRequest> requests = request.getRequestItems().get(tableName);
+                    batchWrites.add(requests);
+                    ((AsyncHandler<BatchWriteItemRequest, BatchWriteItemResult>) invocation.getArguments()[1]).
+                            onSuccess(request, results.apply(requests));
+                    return null;
+                });
+    }
+
+    private List<ImageMetadata> images(int count) {
+        List<ImageMetadata> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ImageMetadata imageMetadata = new ImageMetadata();
+            imageMetadata.setName("image" + i + ".jpg");
+            imageMetadata.setOriginalFormat("jpg");
+            images.add(imageMetadata);
+        }
+        return images;
+    }
+}
@@ -0,0 +1,73 @@
+package com.progimage.repository.service.impl;
+
+import com.amazonaws.util.IOUtils;
+import com.progimage.exception.NotFoundException;
+import com.progimage.repository.service.WorkQueue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LocalFileStorageServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalFileStorageService storageService;
+
+    private final static String key = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private static byte[] existingJpgData;
+
+    static {
+        try {
+            existingJpgData = IOUtils.toByteArray(
+                    LocalFileStorageServiceTest.class.getResourceAsStream("/image.jpg"));
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Before
+    public void init() throws IOException {
+        storageService = new LocalFileStorageService();
+        ReflectionTestUtils.setField(storageService, "root", temporaryFolder.getRoot().getAbsolutePath());
+        ReflectionTestUtils.setField(storageService, "baseUrl", "http://localhost:8080");
+        ReflectionTestUtils.setField(storageService, "urlMaxAge", 3600L);
+        ReflectionTestUtils.setField(storageService, "storageWorkQueue", new WorkQueue("storage", 2, 10));
+        storageService.init();
+    }
+
+    @Test
+    public void storeAndRetrieve() throws Exception {
+        storageService.store(key, "jpg", new ByteArrayInputStream(existingJpgData), existingJpgData.length).
+                toBlocking().single();
+
+        InputStream data = storageService.retrieve(key).toBlocking().single();
+        assertArrayEquals(existingJpgData, IOUtils.toByteArray(data));
+
+        Path path = storageService.resolvePath(key);
+        assertEquals("jpg", storageService.resolveFormat(path));
+        assertEquals(temporaryFolder.getRoot().toPath().resolve("b5").resolve("3c").resolve(key + ".jpg"), path);
+        assertEquals("http://localhost:8080/progimage/repository/storage/" + key,
+                storageService.resolveURL(key).toString());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void resolveMissingKey() throws Exception {
+        storageService.resolvePath(key);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void resolveInvalidKey() throws Exception {
+        storageService.resolvePath("../" + key);
+    }
+}
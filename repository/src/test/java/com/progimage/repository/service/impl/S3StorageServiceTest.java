@@ -0,0 +1,183 @@
+package com.progimage.repository.service.impl;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.util.IOUtils;
+import com.progimage.repository.service.WorkQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class S3StorageServiceTest {
+
+    private final static String key = "b53cf7e6-5ea0-4f37-8e10-619ac2b9190c";
+
+    private final static String uploadId = "upload-1";
+
+    private final static int partSize = 10;
+
+    private AmazonS3 amazonS3;
+
+    private WorkQueue storageWorkQueue;
+
+    private S3StorageService storageService;
+
+    private List<byte[]> uploadedParts;
+
+    @Before
+    public void init() {
+        amazonS3 = Mockito.mock(AmazonS3.class);
+        storageWorkQueue = new WorkQueue("storage", 2, 10);
+        uploadedParts = new CopyOnWriteArrayList<>();
+
+        storageService = new S3StorageService();
+        ReflectionTestUtils.setField(storageService, "bucketName", "bucket");
+        ReflectionTestUtils.setField(storageService, "uploadPartSize", partSize);
+        ReflectionTestUtils.setField(storageService, "urlBucketSeconds", 3600L);
+        ReflectionTestUtils.setField(storageService, "urlCacheSize", 10L);
+        ReflectionTestUtils.setField(storageService, "storageWorkQueue", storageWorkQueue);
+        ReflectionTestUtils.setField(storageService, "transferManager", Mockito.mock(TransferManager.class));
+        ReflectionTestUtils.setField(storageService, "amazonS3", amazonS3);
+        storageService.init();
+
+        InitiateMultipartUploadResult initiated = new InitiateMultipartUploadResult();
+        initiated.setUploadId(uploadId);
+        given(amazonS3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).willReturn(initiated);
+        given(amazonS3.uploadPart(any(UploadPartRequest.class))).willAnswer(invocation -> {
+            UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+            uploadedParts.add(IOUtils.toByteArray(request.getInputStream()));
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        });
+        given(amazonS3.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .willReturn(new CompleteMultipartUploadResult());
+    }
+
+    @After
+    public void cleanup() {
+        storageWorkQueue.shutdown();
+    }
+
+    @Test
+    public void storeOfUnknownLengthUploadsParts() throws Exception {
+        byte[] data = data(25);
+
+        storageService.store(key, "jpg", new ByteArrayInputStream(data), -1).toBlocking().single();
+
+        assertEquals(3, uploadedParts.size());
+        assertEquals(partSize, uploadedParts.get(0).length);
+        assertEquals(partSize, uploadedParts.get(1).length);
+        assertEquals(5, uploadedParts.get(2).length);
+        assertArrayEquals(data, concat(uploadedParts));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completed =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        Mockito.verify(amazonS3).completeMultipartUpload(completed.capture());
+        assertEquals(uploadId, completed.getValue().getUploadId());
+        assertEquals(3, completed.getValue().getPartETags().size());
+        Mockito.verify(amazonS3, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void storeOfUnknownLengthWithSinglePartUsesPutObject() throws Exception {
+        byte[] data = data(5);
+        List<byte[]> putObjects = new ArrayList<>();
+        given(amazonS3.putObject(eq("bucket"), eq(key), any(InputStream.class), any(ObjectMetadata.class)))
+                .willAnswer(invocation -> {
+                    putObjects.add(IOUtils.toByteArray((InputStream) invocation.getArguments()[2]));
+                    return new PutObjectResult();
+                });
+
+        storageService.store(key, "jpg", new ByteArrayInputStream(data), -1).toBlocking().single();
+
+        ArgumentCaptor<ObjectMetadata> metadata = ArgumentCaptor.forClass(ObjectMetadata.class);
+        Mockito.verify(amazonS3).putObject(eq("bucket"), eq(key), any(InputStream.class), metadata.capture());
+        assertEquals(5, metadata.getValue().getContentLength());
+        assertArrayEquals(data, putObjects.get(0));
+        Mockito.verify(amazonS3, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void storeOfUnknownLengthFillingOnePartUploadsParts() throws Exception {
+        byte[] data = data(partSize);
+
+        storageService.store(key, "jpg", new ByteArrayInputStream(data), -1).toBlocking().single();
+
+        assertEquals(1, uploadedParts.size());
+        assertArrayEquals(data, uploadedParts.get(0));
+        Mockito.verify(amazonS3, never()).putObject(eq("bucket"), eq(key), any(InputStream.class), any(ObjectMetadata.class));
+    }
+
+    @Test
+    public void failedPartAbortsUpload() throws Exception {
+        given(amazonS3.uploadPart(any(UploadPartRequest.class)))
+                .willAnswer(invocation -> {
+                    UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+                    if (request.getPartNumber() == 2) {
+                        throw new AmazonServiceException("Part upload failed");
+                    }
+                    UploadPartResult result = new UploadPartResult();
+                    result.setPartNumber(request.getPartNumber());
+                    result.setETag("etag-" + request.getPartNumber());
+                    return result;
+                });
+
+        try {
+            storageService.store(key, "jpg", new ByteArrayInputStream(data(25)), -1).toBlocking().single();
+            fail("Expected upload to fail");
+        } catch (AmazonServiceException expected) {
+        }
+
+        ArgumentCaptor<AbortMultipartUploadRequest> aborted = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        Mockito.verify(amazonS3, times(1)).abortMultipartUpload(aborted.capture());
+        assertEquals(uploadId, aborted.getValue().getUploadId());
+        Mockito.verify(amazonS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private byte[] concat(List<byte[]> parts) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,171 @@
+package com.progimage.repository.service.impl;
+
+import com.amazonaws.util.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.test.util.ReflectionTestUtils;
+import rx.Observable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+public class TieredStorageServiceTest {
+
+    private final static long maxSize = 30;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private S3StorageService delegate;
+
+    private TieredStorageService storageService;
+
+    @Before
+    public void init() throws IOException {
+        delegate = Mockito.mock(S3StorageService.class);
+        given(delegate.store(anyString(), anyString(), any(InputStream.class), anyLong())).willAnswer(invocation -> {
+            try (InputStream in = (InputStream) invocation.getArguments()[2]) {
+                IOUtils.toByteArray(in);
+            }
+            return Observable.just(invocation.getArguments()[0]);
+        });
+
+        storageService = new TieredStorageService();
+        ReflectionTestUtils.setField(storageService, "delegate", delegate);
+        ReflectionTestUtils.setField(storageService, "root", temporaryFolder.getRoot().getAbsolutePath());
+        ReflectionTestUtils.setField(storageService, "maxSize", maxSize);
+        storageService.init();
+    }
+
+    @Test
+    public void storedObjectIsServedFromTier() throws Exception {
+        byte[] data = data(10);
+        store("a", data);
+
+        assertArrayEquals(data, retrieve("a"));
+
+        Mockito.verify(delegate, never()).retrieve(anyString());
+        assertEquals(1L, metric("storage.tier.hits"));
+        assertEquals(10L, metric("storage.tier.bytes"));
+    }
+
+    @Test
+    public void failedStoreIsNotCached() throws Exception {
+        given(delegate.store(anyString(), anyString(), any(InputStream.class), anyLong())).willAnswer(invocation -> {
+            IOUtils.toByteArray((InputStream) invocation.getArguments()[2]);
+            return Observable.error(new IllegalStateException("Upload failed"));
+        });
+
+        try {
+            store("a", data(10));
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(0, metric("storage.tier.objects"));
+        assertEquals(0, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void retrievedObjectIsCachedAfterRead() throws Exception {
+        byte[] data = data(10);
+        given(delegate.retrieve("a")).willAnswer(invocation -> Observable.just(new ByteArrayInputStream(data)));
+
+        assertArrayEquals(data, retrieve("a"));
+        assertArrayEquals(data, retrieve("a"));
+
+        Mockito.verify(delegate, times(1)).retrieve("a");
+        assertEquals(1L, metric("storage.tier.hits"));
+        assertEquals(1L, metric("storage.tier.misses"));
+    }
+
+    @Test
+    public void retrievedObjectLargerThanTierIsNotCached() throws Exception {
+        store("small", data(10));
+        byte[] large = data(40);
+        given(delegate.retrieve("large")).willAnswer(invocation -> Observable.just(new ByteArrayInputStream(large)));
+
+        assertArrayEquals(large, retrieve("large"));
+        assertArrayEquals(large, retrieve("large"));
+
+        Mockito.verify(delegate, times(2)).retrieve("large");
+        assertEquals(1, metric("storage.tier.objects"));
+        assertEquals(10L, metric("storage.tier.bytes"));
+        assertEquals(0L, metric("storage.tier.evictions"));
+    }
+
+    @Test
+    public void leastRecentlyUsedObjectIsEvicted() throws Exception {
+        store("a", data(10));
+        store("b", data(10));
+        store("c", data(10));
+        retrieve("a");
+
+        store("d", data(10));
+
+        assertEquals(3, metric("storage.tier.objects"));
+        assertEquals(30L, metric("storage.tier.bytes"));
+        assertEquals(1L, metric("storage.tier.evictions"));
+
+        given(delegate.retrieve("b")).willAnswer(invocation -> Observable.just(new ByteArrayInputStream(data(10))));
+        retrieve("b");
+        Mockito.verify(delegate, times(1)).retrieve("b");
+        retrieve("a");
+        Mockito.verify(delegate, never()).retrieve("a");
+    }
+
+    @Test
+    public void tierIsRestoredOnRestart() throws Exception {
+        store("a", data(10));
+
+        TieredStorageService restarted = new TieredStorageService();
+        ReflectionTestUtils.setField(restarted, "delegate", delegate);
+        ReflectionTestUtils.setField(restarted, "root", temporaryFolder.getRoot().getAbsolutePath());
+        ReflectionTestUtils.setField(restarted, "maxSize", maxSize);
+        restarted.init();
+
+        try (InputStream in = restarted.retrieve("a").toBlocking().single()) {
+            assertArrayEquals(data(10), IOUtils.toByteArray(in));
+        }
+        Mockito.verify(delegate, never()).retrieve(anyString());
+    }
+
+    private void store(String key, byte[] data) {
+        storageService.store(key, "jpg", new ByteArrayInputStream(data), data.length).toBlocking().single();
+    }
+
+    private byte[] retrieve(String key) throws IOException {
+        try (InputStream in = storageService.retrieve(key).toBlocking().single()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private Number metric(String name) {
+        return storageService.metrics().stream().
+                filter(metric -> metric.getName().equals(name)).
+                map(Metric::getValue).
+                findFirst().
+                orElseThrow(() -> new IllegalArgumentException(name));
+    }
+
+    private byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+}